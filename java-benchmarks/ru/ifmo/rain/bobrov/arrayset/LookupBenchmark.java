@@ -0,0 +1,73 @@
+package ru.ifmo.rain.bobrov.arrayset;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random {@code contains} lookups in {@link IntArraySet} and {@link LongArraySet} with and without search index.
+ * Half of the probes are present, sets of 10M elements are far larger than caches.
+ * Run with {@code run-benchmarks.cmd LookupBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class LookupBenchmark {
+    private static final int PROBES = 1 << 12;
+
+    @Param({"100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean searchIndex;
+
+    private IntArraySet ints;
+    private LongArraySet longs;
+    private final int[] intProbes = new int[PROBES];
+    private final long[] longProbes = new long[PROBES];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final int[] intValues = new int[size];
+        final long[] longValues = new long[size];
+        for (int i = 0; i < size; i++) {
+            intValues[i] = 2 * i;
+            longValues[i] = 2L * i;
+        }
+        ints = new IntArraySet(intValues, searchIndex);
+        longs = new LongArraySet(longValues, searchIndex);
+        final Random random = new Random(239);
+        for (int i = 0; i < PROBES; i++) {
+            intProbes[i] = random.nextInt(2 * size);
+            longProbes[i] = intProbes[i];
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public int intContains() {
+        int found = 0;
+        for (final int probe : intProbes) {
+            if (ints.contains(probe)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PROBES)
+    public int longContains() {
+        int found = 0;
+        for (final long probe : longProbes) {
+            if (longs.contains(probe)) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,33 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Utils for benchmark files.
+ */
+class BenchmarkFiles {
+    private BenchmarkFiles() {
+
+    }
+
+    /**
+     * Deletes the directory with all its contents.
+     *
+     * @param directory directory to delete
+     * @throws IOException if files can't be deleted
+     */
+    static void delete(final Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (final Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs Walk benchmarks and writes results as JSON.
+ *
+ * Usage: {@code BenchmarkRunner [benchmark regexp] [result file]},
+ * by default all Walk benchmarks are run and results are written to {@code walk-benchmarks.json}.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        final String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackageName() + ".*Benchmark";
+        final String result = args.length > 1 ? args[1] : "walk-benchmarks.json";
+        new Runner(new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result)
+                .build()).run();
+    }
+}
@@ -0,0 +1,70 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Complete {@link Walk} runs over a file set with warm or cold page cache.
+ *
+ * Cold runs drop page cache before every invocation through {@code /proc/sys/vm/drop_caches},
+ * which requires Linux and root privileges.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+    private static final Path DROP_CACHES = Paths.get("/proc/sys/vm/drop_caches");
+
+    @Param({"TINY", "MIXED", "HUGE"})
+    public FileSet fileSet;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"warm", "cold"})
+    public String pageCache;
+
+    private Path directory;
+    private Path input;
+    private Path output;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("walk-end-to-end-benchmark");
+        final List<Path> files = fileSet.generate(directory.resolve("files"));
+        input = directory.resolve("input.txt");
+        output = directory.resolve("output.txt");
+        Files.write(input, files.stream().map(Path::toString).collect(Collectors.toList()), StandardCharsets.UTF_8);
+    }
+
+    @Setup(Level.Iteration)
+    public void dropCaches() throws IOException {
+        if ("cold".equals(pageCache)) {
+            if (!Files.isWritable(DROP_CACHES)) {
+                throw new IllegalStateException("Cold runs require write access to " + DROP_CACHES + ".");
+            }
+            Files.write(DROP_CACHES, "3".getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.delete(directory);
+    }
+
+    @Benchmark
+    public void walk() {
+        Walk.main(new String[]{"--threads", Integer.toString(threads), input.toString(), output.toString()});
+    }
+}
@@ -0,0 +1,80 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic sets of files used by Walk benchmarks.
+ *
+ * Contents and sizes are generated from a fixed seed, so every run hashes the same bytes.
+ * Files are forced to the storage after generation, so page cache can be dropped for cold runs.
+ */
+public enum FileSet {
+    /**
+     * Many files of 64 to 512 bytes, dominated by open and metadata costs.
+     */
+    TINY(20_000, 64, 512),
+    /**
+     * Files with sizes distributed log-uniformly from 1 KB to 8 MB.
+     */
+    MIXED(2_000, 1 << 10, 8 << 20),
+    /**
+     * A few huge files, dominated by read bandwidth and hash speed.
+     */
+    HUGE(2, 256 << 20, 256 << 20);
+
+    private static final int WRITE_SIZE = 1 << 20;
+
+    private final int files;
+    private final int minSize;
+    private final int maxSize;
+
+    FileSet(final int files, final int minSize, final int maxSize) {
+        this.files = files;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Generates files of the set in the directory.
+     *
+     * @param directory directory to create files in
+     * @return created files
+     * @throws IOException if files can't be written
+     */
+    public List<Path> generate(final Path directory) throws IOException {
+        final Random random = new Random(ordinal() * 31L + 17);
+        final byte[] bytes = new byte[WRITE_SIZE];
+        random.nextBytes(bytes);
+        final List<Path> result = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            final Path file = directory.resolve(String.format("%03d", i % 1000)).resolve("file-" + i);
+            Files.createDirectories(file.getParent());
+            final double logSize = Math.log(minSize) + random.nextDouble() * (Math.log(maxSize) - Math.log(minSize));
+            long remaining = Math.round(Math.exp(logSize));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                // contents are slices of one random block starting at random offsets
+                int offset = random.nextInt(WRITE_SIZE);
+                while (remaining > 0) {
+                    final ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, (int) Math.min(remaining, WRITE_SIZE - offset));
+                    remaining -= buffer.remaining();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    offset = 0;
+                }
+                channel.force(true);
+            }
+            result.add(file);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,50 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of hashing a file set with {@link FileHasher}, files are in page cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HashBenchmark {
+    @Param({"TINY", "MIXED", "HUGE"})
+    public FileSet fileSet;
+
+    @Param({"fnv1-32", "fnv1a-64", "xxhash64", "sha1"})
+    public String algorithm;
+
+    private Path directory;
+    private List<Path> files;
+    private FileHasher hasher;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("walk-hash-benchmark");
+        files = fileSet.generate(directory);
+        hasher = new FileHasher(HashAlgorithm.forName(algorithm), new WalkStats());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkFiles.delete(directory);
+    }
+
+    @Benchmark
+    public void hashFiles(final Blackhole blackhole) throws IOException {
+        for (final Path file : files) {
+            blackhole.consume(hasher.hash(file));
+        }
+    }
+}
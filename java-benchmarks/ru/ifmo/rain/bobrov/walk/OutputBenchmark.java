@@ -0,0 +1,63 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing result lines with {@link HashWriter} compared to formatting them with {@link String#format}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OutputBenchmark {
+    private static final int LINES = 100_000;
+
+    private Path output;
+    private final int[] hashes = new int[LINES];
+    private final byte[][] digests = new byte[LINES][];
+    private final String[] names = new String[LINES];
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        output = Files.createTempFile("walk-output-benchmark", ".txt");
+        final Random random = new Random(239);
+        for (int i = 0; i < LINES; i++) {
+            hashes[i] = random.nextInt();
+            digests[i] = new byte[]{(byte) (hashes[i] >>> 24), (byte) (hashes[i] >>> 16), (byte) (hashes[i] >>> 8), (byte) hashes[i]};
+            names[i] = "/data/projects/module-" + random.nextInt(100) + "/src/main/\u0444\u0430\u0439\u043b-" + i + ".java";
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public void hashWriter() throws IOException {
+        try (HashWriter writer = new HashWriter(output, "", null, 0)) {
+            for (int i = 0; i < LINES; i++) {
+                writer.write(digests[i], names[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public void stringFormat() throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < LINES; i++) {
+                writer.write(String.format("%08x %s%n", hashes[i], names[i]));
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+cd ..\..\..\..\..\..\
+SET solutions=%cd%
+SET my_pack=ru\ifmo\rain\bobrov\walk
+SET lib=%solutions%\lib
+SET jmh=%lib%\jmh-core.jar;%lib%\jmh-generator-annprocess.jar;%lib%\jopt-simple.jar;%lib%\commons-math3.jar
+SET out=%solutions%\_build\benchmarks
+rmdir /s /q %out%
+md %out%
+
+javac -cp %jmh% -processorpath %jmh% -d %out% %solutions%\java-solutions\%my_pack%\*.java %solutions%\java-benchmarks\%my_pack%\*.java %solutions%\java-solutions\ru\ifmo\rain\bobrov\arrayset\*.java %solutions%\java-benchmarks\ru\ifmo\rain\bobrov\arrayset\*.java
+java -cp %out%;%jmh% ru.ifmo.rain.bobrov.walk.BenchmarkRunner %*
+pause
@@ -1,10 +1,21 @@
 package ru.ifmo.rain.bobrov.arrayset;
 
 import java.util.*;
-
+import java.util.function.Consumer;
+
+/**
+ * Immutable sorted set backed by a sorted list.
+ *
+ * Every view is the same base list with a range {@code [from, to)} of its indices and a direction,
+ * so views are created in {@code O(1)} and search the base list as fast as the root set.
+ */
 public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
-    private final List<T> set;
+    private final List<T> elements;
+    private final Comparator<? super T> baseComparator;
     private final Comparator<? super T> comparator;
+    private final int from;
+    private final int to;
+    private final boolean descending;
 
     public ArraySet() {
         this((Comparator<T>) null);
@@ -20,30 +31,57 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
     }
 
     public ArraySet(Collection<? extends T> collection, Comparator<? super T> comparator) {
-        this.comparator = comparator;
-        Set<T> tmp = new TreeSet<>(comparator);
-        tmp.addAll(collection);
-        set = new ArrayList<>(tmp);
+        this.comparator = baseComparator = comparator;
+        if (collection instanceof SortedSet && Objects.equals(((SortedSet<?>) collection).comparator(), comparator)) {
+            elements = new ArrayList<>(collection);
+        } else {
+            elements = sortedUnique(collection);
+        }
+        from = 0;
+        to = elements.size();
+        descending = false;
     }
 
-    private ArraySet(List<T> collection, Comparator<? super T> comparator) {
-        set = collection;
-        if (collection instanceof FastReverseList) {
-            ((FastReverseList) set).reverse();
+    @SuppressWarnings("unchecked")
+    private List<T> sortedUnique(Collection<? extends T> collection) {
+        T[] elements = (T[]) collection.toArray();
+        // stable sort keeps the first of equal elements in front, as TreeSet.add does
+        Arrays.sort(elements, comparator);
+        int size = 0;
+        for (int i = 0; i < elements.length; i++) {
+            if (size == 0 || compare(elements[size - 1], elements[i]) != 0) {
+                elements[size++] = elements[i];
+            }
         }
-        this.comparator = comparator;
+        return Arrays.asList(Arrays.copyOf(elements, size));
+    }
+
+    /**
+     * Creates set over sorted list of unique elements without copying it.
+     */
+    static <T> ArraySet<T> ofSorted(List<T> sorted, Comparator<? super T> comparator) {
+        return new ArraySet<>(sorted, comparator, 0, sorted.size(), false);
     }
 
-    private boolean isInRange(int i) {
-        return -1 < i && i < size();
+    private ArraySet(List<T> elements, Comparator<? super T> baseComparator, int from, int to, boolean descending) {
+        this.elements = elements;
+        this.baseComparator = baseComparator;
+        this.comparator = descending ? Collections.reverseOrder(baseComparator) : baseComparator;
+        this.from = from;
+        this.to = to;
+        this.descending = descending;
+    }
+
+    private ArraySet<T> view(int from, int to, boolean descending) {
+        return new ArraySet<>(elements, baseComparator, from, to, descending);
     }
 
     private T getElement(int pos) {
-        return (pos >= 0) ? set.get(pos) : null;
+        return (pos >= 0) ? elements.get(pos) : null;
     }
 
     private int floorIndex(T element) {
-        return findPos(element, 0, -1);
+        return descending ? findCeiling(element, 0, 0) : findFloor(element, 0, -1);
     }
 
     @Override
@@ -53,7 +91,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
 
 
     private int ceilingIndex(T element) {
-        return findPos(element, 0, 0);
+        return descending ? findFloor(element, 0, -1) : findCeiling(element, 0, 0);
     }
 
     @Override
@@ -62,7 +100,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
     }
 
     private int lowerIndex(T element) {
-        return findPos(element, -1, -1);
+        return descending ? findCeiling(element, 1, 0) : findFloor(element, -1, -1);
     }
 
     @Override
@@ -71,7 +109,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
     }
 
     private int higherIndex(T element) {
-        return findPos(element, 1, 0);
+        return descending ? findFloor(element, -1, -1) : findCeiling(element, 1, 0);
     }
 
     @Override
@@ -81,7 +119,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
 
     @Override
     public NavigableSet<T> descendingSet() {
-        return new ArraySet<>(new FastReverseList<>(set), Collections.reverseOrder(comparator));
+        return view(from, to, !descending);
     }
 
     @Override
@@ -93,26 +131,28 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
     public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
         int l = fromInclusive ? ceilingIndex(fromElement) : higherIndex(fromElement);
         int r = toInclusive ? floorIndex(toElement) : lowerIndex(toElement);
-        if (l == -1 || r == -1 || l > r) {
-            return new ArraySet<>(comparator);
+        if (l == -1 || r == -1 || (descending ? l < r : l > r)) {
+            return view(from, from, descending);
         }
-        return new ArraySet<>(set.subList(l, r + 1), comparator);
+        return descending ? view(r, l + 1, true) : view(l, r + 1, false);
     }
 
     @Override
     public NavigableSet<T> headSet(T toElement, boolean inclusive) {
-        if (isEmpty()) {
-            return this;
+        int r = inclusive ? floorIndex(toElement) : lowerIndex(toElement);
+        if (r == -1) {
+            return view(from, from, descending);
         }
-        return subSet(first(), true, toElement, inclusive);
+        return descending ? view(r, to, true) : view(from, r + 1, false);
     }
 
     @Override
     public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
-        if (isEmpty()) {
-            return this;
+        int l = inclusive ? ceilingIndex(fromElement) : higherIndex(fromElement);
+        if (l == -1) {
+            return view(from, from, descending);
         }
-        return subSet(fromElement, inclusive, last(), true);
+        return descending ? view(from, l + 1, true) : view(l, to, false);
     }
 
     @Override
@@ -127,12 +167,21 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
 
     @Override
     public Iterator<T> iterator() {
-        return Collections.unmodifiableList(set).iterator();
+        return Collections.unmodifiableList(list()).iterator();
+    }
+
+    /**
+     * Returns spliterator that splits the set by index, it is {@link Spliterator#SIZED} and
+     * {@link Spliterator#SORTED} in the order of the set, including descending views.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new IndexSpliterator(from, to);
     }
 
     @Override
     public int size() {
-        return set.size();
+        return to - from;
     }
 
     @Override
@@ -156,6 +205,12 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
                 comparator.compare(firstElement, secondElement);
     }
 
+    @SuppressWarnings("unchecked")
+    private int baseCompare(T firstElement, T secondElement) {
+        return (baseComparator == null) ? ((Comparable<T>) firstElement).compareTo(secondElement) :
+                baseComparator.compare(firstElement, secondElement);
+    }
+
     @Override
     public SortedSet<T> subSet(T fromElement, T toElement) {
         if (compare(fromElement, toElement) > 0) {
@@ -165,14 +220,26 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
 
     }
 
-    private int findPos(T element, int shiftFound, int shiftNotFound) {
-        int pos = Collections.binarySearch(set, element, comparator);
-        if (pos >= 0) {
-            pos+=shiftFound;
-            return isInRange(pos) ? pos : -1;
-        }
-        pos = -(pos + 1) + shiftNotFound;
-        return isInRange(pos) ? pos : -1;
+    /**
+     * Finds index of the greatest element of the range not greater (or less, when shifted) than the given one,
+     * indices and order are of the base list.
+     */
+    private int findFloor(T element, int shiftFound, int shiftNotFound) {
+        int pos = search(element);
+        pos = pos >= 0 ? pos + shiftFound : -(pos + 1) + shiftNotFound;
+        pos = Math.min(pos, to - 1);
+        return pos >= from ? pos : -1;
+    }
+
+    /**
+     * Finds index of the least element of the range not less (or greater, when shifted) than the given one,
+     * indices and order are of the base list.
+     */
+    private int findCeiling(T element, int shiftFound, int shiftNotFound) {
+        int pos = search(element);
+        pos = pos >= 0 ? pos + shiftFound : -(pos + 1) + shiftNotFound;
+        pos = Math.max(pos, from);
+        return pos < to ? pos : -1;
     }
 
     @Override
@@ -190,7 +257,7 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
         if (isEmpty()) {
             throw new NoSuchElementException();
         }
-        return set.get(0);
+        return elements.get(descending ? to - 1 : from);
     }
 
     @Override
@@ -198,12 +265,292 @@ public class ArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
         if (isEmpty()) {
             throw new NoSuchElementException();
         }
-        return set.get(size() - 1);
+        return elements.get(descending ? from : to - 1);
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public boolean contains(Object object) {
-        return Collections.binarySearch(set, (T) object, comparator) >= 0;
+        int pos = search((T) object);
+        return from <= pos && pos < to;
+    }
+
+    /**
+     * Searches element in the base list with the same contract as {@link Collections#binarySearch}.
+     * Results outside of the range are only used to clamp positions to it.
+     */
+    private int search(T element) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = baseCompare(elements.get(middle), element);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Checks presence of every probe. Probes must be sorted in the order of the set,
+     * each one is searched by galloping from the position of the previous one.
+     *
+     * @param probes sorted elements to look for
+     * @param result array to write results to, must be at least as long as {@code probes}
+     * @throws IllegalArgumentException if probes are not sorted or result is too short
+     */
+    public void containsAll(T[] probes, boolean[] result) {
+        List<T> list = list();
+        probeAll(probes, result.length, list, (i, rank) ->
+                result[i] = rank < list.size() && compare(list.get(rank), probes[i]) == 0);
+    }
+
+    public void floorAll(T[] probes, T[] result) {
+        List<T> list = list();
+        probeAll(probes, result.length, list, (i, rank) ->
+                result[i] = rank < list.size() && compare(list.get(rank), probes[i]) == 0 ? list.get(rank) :
+                        rank > 0 ? list.get(rank - 1) : null);
+    }
+
+    public void ceilingAll(T[] probes, T[] result) {
+        List<T> list = list();
+        probeAll(probes, result.length, list, (i, rank) -> result[i] = rank < list.size() ? list.get(rank) : null);
+    }
+
+    /**
+     * Writes amount of elements of the set less than every probe.
+     */
+    public void rankAll(T[] probes, int[] result) {
+        probeAll(probes, result.length, list(), (i, rank) -> result[i] = rank);
+    }
+
+    private interface ProbeResult {
+        void accept(int probe, int rank);
+    }
+
+    private void probeAll(T[] probes, int resultLength, List<T> list, ProbeResult result) {
+        if (resultLength < probes.length) {
+            throw new IllegalArgumentException("Result array is shorter than probes.");
+        }
+        int rank = 0;
+        for (int i = 0; i < probes.length; i++) {
+            if (i > 0 && compare(probes[i - 1], probes[i]) > 0) {
+                throw new IllegalArgumentException("Probes are not sorted.");
+            }
+            rank = gallop(list, rank, probes[i]);
+            result.accept(i, rank);
+        }
+    }
+
+    /**
+     * Returns elements of the set in its order.
+     */
+    private List<T> list() {
+        return descending ? new Descending() : elements.subList(from, to);
+    }
+
+    /**
+     * Spliterator over base list indices {@code [low, high)}, descending views take elements from the high end.
+     */
+    private class IndexSpliterator implements Spliterator<T> {
+        private int low;
+        private int high;
+
+        IndexSpliterator(int low, int high) {
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (low >= high) {
+                return false;
+            }
+            action.accept(elements.get(descending ? --high : low++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (descending) {
+                for (int i = high - 1; i >= low; i--) {
+                    action.accept(elements.get(i));
+                }
+            } else {
+                for (int i = low; i < high; i++) {
+                    action.accept(elements.get(i));
+                }
+            }
+            low = high;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int middle = (low + high) >>> 1;
+            if (middle == low) {
+                return null;
+            }
+            IndexSpliterator prefix;
+            if (descending) {
+                prefix = new IndexSpliterator(middle, high);
+                high = middle;
+            } else {
+                prefix = new IndexSpliterator(low, middle);
+                low = middle;
+            }
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return high - low;
+        }
+
+        @Override
+        public int characteristics() {
+            return SIZED | SUBSIZED | SORTED | DISTINCT | ORDERED | IMMUTABLE;
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return comparator;
+        }
+    }
+
+    private class Descending extends AbstractList<T> implements RandomAccess {
+        @Override
+        public T get(int index) {
+            return elements.get(to - 1 - Objects.checkIndex(index, size()));
+        }
+
+        @Override
+        public int size() {
+            return ArraySet.this.size();
+        }
+    }
+
+    /**
+     * Returns set of elements contained in this set or in the other one.
+     * Of equal elements the one from this set is kept, as by all set operations below.
+     *
+     * @throws IllegalArgumentException if sets have different comparators
+     */
+    public ArraySet<T> union(ArraySet<T> other) {
+        return merge(other, true, true, true);
+    }
+
+    public ArraySet<T> intersect(ArraySet<T> other) {
+        return merge(other, false, true, false);
+    }
+
+    public ArraySet<T> difference(ArraySet<T> other) {
+        return merge(other, true, false, false);
+    }
+
+    /**
+     * Merges sets keeping elements of the chosen parts. Sets of similar size are merged linearly,
+     * otherwise every element of the smaller set is found in the larger one by galloping search
+     * from the previous position, which takes {@code O(m log(n / m))} comparisons.
+     */
+    private ArraySet<T> merge(ArraySet<T> other, boolean thisOnly, boolean both, boolean otherOnly) {
+        if (!Objects.equals(order(comparator), order(other.comparator))) {
+            throw new IllegalArgumentException("Sets have different comparators.");
+        }
+        List<T> result = new ArrayList<>();
+        List<T> list = list();
+        List<T> otherList = other.list();
+        int n = list.size();
+        int m = otherList.size();
+        if (gallops(n, m) || gallops(m, n)) {
+            boolean thisIsSmall = n < m;
+            List<T> small = thisIsSmall ? list : otherList;
+            List<T> large = thisIsSmall ? otherList : list;
+            boolean smallOnly = thisIsSmall ? thisOnly : otherOnly;
+            boolean largeOnly = thisIsSmall ? otherOnly : thisOnly;
+            int pos = 0;
+            for (T element : small) {
+                int next = gallop(large, pos, element);
+                if (largeOnly) {
+                    result.addAll(large.subList(pos, next));
+                }
+                pos = next;
+                if (pos < large.size() && compare(large.get(pos), element) == 0) {
+                    if (both) {
+                        result.add(thisIsSmall ? element : large.get(pos));
+                    }
+                    pos++;
+                } else if (smallOnly) {
+                    result.add(element);
+                }
+            }
+            if (largeOnly) {
+                result.addAll(large.subList(pos, large.size()));
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < n && j < m) {
+                int comparison = compare(list.get(i), otherList.get(j));
+                if (comparison < 0) {
+                    if (thisOnly) {
+                        result.add(list.get(i));
+                    }
+                    i++;
+                } else if (comparison > 0) {
+                    if (otherOnly) {
+                        result.add(otherList.get(j));
+                    }
+                    j++;
+                } else {
+                    if (both) {
+                        result.add(list.get(i));
+                    }
+                    i++;
+                    j++;
+                }
+            }
+            if (thisOnly) {
+                result.addAll(list.subList(i, n));
+            }
+            if (otherOnly) {
+                result.addAll(otherList.subList(j, m));
+            }
+        }
+        return ofSorted(result, comparator);
+    }
+
+    private static Comparator<?> order(Comparator<?> comparator) {
+        return comparator == null ? Comparator.naturalOrder() : comparator;
+    }
+
+    private static boolean gallops(int small, int large) {
+        return (long) small * (Integer.SIZE - Integer.numberOfLeadingZeros(large)) < large;
+    }
+
+    /**
+     * Returns index of the first element of {@code list} from {@code from} that is not less than {@code element}.
+     */
+    private int gallop(List<T> list, int from, T element) {
+        int low = from;
+        int bound = 1;
+        while (bound <= list.size() - from && compare(list.get(from + bound - 1), element) < 0) {
+            low = from + bound;
+            bound <<= 1;
+        }
+        int high = Math.min(from + bound - 1, list.size());
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(list.get(middle), element) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
     }
 }
@@ -0,0 +1,135 @@
+package ru.ifmo.rain.bobrov.arrayset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+/**
+ * Versioned file format of sorted sets that are served directly from a memory mapping.
+ *
+ * File starts with a little-endian header: magic, version, kind of keys, key width or block size,
+ * amount of keys and maximal key length. The header is followed by the keys in the in-memory layout of
+ * {@link OffHeapLongSet}, {@link OffHeapBytesSet} or {@link FrontCodedStringSet}, so mapping a file
+ * reads nothing but the header.
+ */
+public class ArraySetFormat {
+    private static final int MAGIC = 0x54455341;
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int DEFAULT_BLOCK_SIZE = 16;
+
+    private static final byte LONGS = 1;
+    private static final byte BYTES = 2;
+    private static final byte STRINGS = 3;
+
+    private ArraySetFormat() {
+
+    }
+
+    public static void writeLongs(Path file, OffHeapLongSet set) throws IOException {
+        write(file, LONGS, Long.BYTES, set.size(), Long.BYTES, set.contents());
+    }
+
+    public static void writeBytes(Path file, OffHeapBytesSet set) throws IOException {
+        write(file, BYTES, set.getWidth(), set.size(), set.getWidth(), set.contents());
+    }
+
+    public static void writeStrings(Path file, Collection<String> strings) throws IOException {
+        writeStrings(file, strings, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Writes strings front-coded in blocks of the given size. Strings must be valid UTF-16.
+     */
+    public static void writeStrings(Path file, Collection<String> strings, int blockSize) throws IOException {
+        FrontCodedStringSet set = FrontCodedStringSet.of(strings, blockSize);
+        write(file, STRINGS, blockSize, set.size(), set.getMaxLength(), set.contents());
+    }
+
+    private static void write(Path file, byte kind, int parameter, int size, int maxLength, ByteBuffer contents)
+            throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).put(VERSION).put(kind).putShort((short) 0)
+                .putInt(parameter).putInt(size).putInt(maxLength).putInt(0).flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (ByteBuffer buffer : new ByteBuffer[]{header, contents}) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    public static OffHeapLongSet mapLongs(Path file) throws IOException {
+        Mapping mapping = map(file, LONGS);
+        checkLength(file, mapping, (long) mapping.size * Long.BYTES);
+        return new OffHeapLongSet(mapping.contents);
+    }
+
+    public static OffHeapBytesSet mapBytes(Path file) throws IOException {
+        Mapping mapping = map(file, BYTES);
+        if (mapping.parameter <= 0) {
+            throw new IOException("Invalid key width in " + file + ".");
+        }
+        checkLength(file, mapping, (long) mapping.size * mapping.parameter);
+        return new OffHeapBytesSet(mapping.contents, mapping.parameter);
+    }
+
+    public static FrontCodedStringSet mapStrings(Path file) throws IOException {
+        Mapping mapping = map(file, STRINGS);
+        if (mapping.parameter <= 0 || mapping.maxLength < 0) {
+            throw new IOException("Invalid string set header in " + file + ".");
+        }
+        return new FrontCodedStringSet(mapping.contents, mapping.size, mapping.parameter, mapping.maxLength);
+    }
+
+    private static void checkLength(Path file, Mapping mapping, long expected) throws IOException {
+        if (mapping.contents.capacity() != expected) {
+            throw new IOException("Truncated set file " + file + ".");
+        }
+    }
+
+    private static class Mapping {
+        private final int parameter;
+        private final int size;
+        private final int maxLength;
+        private final ByteBuffer contents;
+
+        Mapping(int parameter, int size, int maxLength, ByteBuffer contents) {
+            this.parameter = parameter;
+            this.size = size;
+            this.maxLength = maxLength;
+            this.contents = contents;
+        }
+    }
+
+    private static Mapping map(Path file, byte kind) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                throw new IOException("Invalid set file " + file + " of " + length + " bytes.");
+            }
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a set file.");
+            }
+            if (mapped.get(4) != VERSION) {
+                throw new IOException("Unsupported version " + mapped.get(4) + " of set file " + file + ".");
+            }
+            if (mapped.get(5) != kind) {
+                throw new IOException("Set file " + file + " holds keys of kind " + mapped.get(5)
+                        + " instead of " + kind + ".");
+            }
+            int size = mapped.getInt(12);
+            if (size < 0) {
+                throw new IOException("Invalid size in " + file + ".");
+            }
+            return new Mapping(mapped.getInt(8), size, mapped.getInt(16), mapped.slice(HEADER_SIZE, (int) length - HEADER_SIZE));
+        }
+    }
+}
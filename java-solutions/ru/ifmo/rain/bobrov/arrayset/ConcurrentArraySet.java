@@ -0,0 +1,341 @@
+package ru.ifmo.rain.bobrov.arrayset;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Thread safe sorted set for many readers and rare writers.
+ *
+ * Contents are an immutable {@link ArraySet} snapshot held in a volatile field. Every read
+ * operation reads the field once and works with that snapshot, so reads take no locks and never wait,
+ * iterators and views see one consistent snapshot. Writers build a new snapshot aside under a lock
+ * and publish it with a single write, bulk operations publish one snapshot for all their elements.
+ * Old snapshots are reclaimed by the garbage collector after the last reader drops them.
+ */
+public class ConcurrentArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
+    private final Object writeLock = new Object();
+    private volatile ArraySet<T> snapshot;
+
+    public ConcurrentArraySet() {
+        this((Comparator<T>) null);
+    }
+
+    public ConcurrentArraySet(Comparator<? super T> comparator) {
+        this(Collections.emptyList(), comparator);
+    }
+
+    public ConcurrentArraySet(Collection<? extends T> collection) {
+        this(collection, null);
+    }
+
+    public ConcurrentArraySet(Collection<? extends T> collection, Comparator<? super T> comparator) {
+        snapshot = new ArraySet<>(collection, comparator);
+    }
+
+    /**
+     * Returns current contents, the returned set never changes.
+     */
+    public ArraySet<T> snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Replaces contents with the given elements, ordered by the comparator of the set.
+     */
+    public void replace(Collection<? extends T> collection) {
+        update(current -> collection);
+    }
+
+    /**
+     * Atomically replaces contents with elements computed from the current snapshot.
+     * Writers are serialized, the function is called under the write lock.
+     */
+    public void update(Function<? super ArraySet<T>, ? extends Collection<? extends T>> function) {
+        synchronized (writeLock) {
+            ArraySet<T> current = snapshot;
+            Collection<? extends T> next = function.apply(current);
+            snapshot = new ArraySet<>(next, current.comparator());
+        }
+    }
+
+    /**
+     * Adds element by publishing a copy of the set, takes linear time.
+     */
+    @Override
+    public boolean add(T element) {
+        synchronized (writeLock) {
+            ArraySet<T> current = snapshot;
+            if (current.contains(element)) {
+                return false;
+            }
+            snapshot = current.union(single(element, current));
+            return true;
+        }
+    }
+
+    /**
+     * Removes element by publishing a copy of the set, takes linear time.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object object) {
+        synchronized (writeLock) {
+            ArraySet<T> current = snapshot;
+            if (!current.contains(object)) {
+                return false;
+            }
+            snapshot = current.difference(single((T) object, current));
+            return true;
+        }
+    }
+
+    @Override
+    public T pollFirst() {
+        synchronized (writeLock) {
+            ArraySet<T> current = snapshot;
+            if (current.isEmpty()) {
+                return null;
+            }
+            T first = current.first();
+            snapshot = current.difference(single(first, current));
+            return first;
+        }
+    }
+
+    @Override
+    public T pollLast() {
+        synchronized (writeLock) {
+            ArraySet<T> current = snapshot;
+            if (current.isEmpty()) {
+                return null;
+            }
+            T last = current.last();
+            snapshot = current.difference(single(last, current));
+            return last;
+        }
+    }
+
+    /**
+     * Adds elements by publishing one copy of the set, takes {@code O(n + m log m)} time.
+     */
+    @Override
+    public boolean addAll(Collection<? extends T> collection) {
+        return publish(current -> current.union(new ArraySet<>(collection, current.comparator())));
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> collection) {
+        return publish(current -> filter(current, element -> !collection.contains(element)));
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> collection) {
+        return publish(current -> filter(current, collection::contains));
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super T> predicate) {
+        return publish(current -> filter(current, element -> !predicate.test(element)));
+    }
+
+    @Override
+    public void clear() {
+        replace(Collections.emptyList());
+    }
+
+    /**
+     * Publishes set computed from the current snapshot if it has other size,
+     * for operations that only add or only remove elements.
+     *
+     * @return whether contents changed
+     */
+    private boolean publish(Function<ArraySet<T>, ArraySet<T>> function) {
+        synchronized (writeLock) {
+            ArraySet<T> current = snapshot;
+            ArraySet<T> next = function.apply(current);
+            if (next.size() == current.size()) {
+                return false;
+            }
+            snapshot = next;
+            return true;
+        }
+    }
+
+    private static <T> ArraySet<T> filter(ArraySet<T> set, Predicate<? super T> keep) {
+        List<T> kept = new ArrayList<>();
+        for (T element : set) {
+            if (keep.test(element)) {
+                kept.add(element);
+            }
+        }
+        return ArraySet.ofSorted(kept, set.comparator());
+    }
+
+    private static <T> ArraySet<T> single(T element, ArraySet<T> set) {
+        return ArraySet.ofSorted(Collections.singletonList(element), set.comparator());
+    }
+
+    @Override
+    public T lower(T element) {
+        return snapshot.lower(element);
+    }
+
+    @Override
+    public T floor(T element) {
+        return snapshot.floor(element);
+    }
+
+    @Override
+    public T ceiling(T element) {
+        return snapshot.ceiling(element);
+    }
+
+    @Override
+    public T higher(T element) {
+        return snapshot.higher(element);
+    }
+
+    @Override
+    public boolean contains(Object object) {
+        return snapshot.contains(object);
+    }
+
+    @Override
+    public T first() {
+        return snapshot.first();
+    }
+
+    @Override
+    public T last() {
+        return snapshot.last();
+    }
+
+    @Override
+    public int size() {
+        return snapshot.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return snapshot.isEmpty();
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return snapshot.comparator();
+    }
+
+    /**
+     * Returns iterator over the current snapshot, its {@code remove} removes the element
+     * returned last from the set by publishing a copy.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new SnapshotIterator(snapshot.iterator());
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return snapshot.spliterator();
+    }
+
+    @Override
+    public Iterator<T> descendingIterator() {
+        return new SnapshotIterator(snapshot.descendingIterator());
+    }
+
+    /**
+     * Returns view of the current snapshot, it doesn't reflect later updates.
+     */
+    @Override
+    public NavigableSet<T> descendingSet() {
+        return snapshot.descendingSet();
+    }
+
+    @Override
+    public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        return snapshot.subSet(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+        return snapshot.headSet(toElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+        return snapshot.tailSet(fromElement, inclusive);
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        return snapshot.subSet(fromElement, toElement);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return snapshot.headSet(toElement);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return snapshot.tailSet(fromElement);
+    }
+
+    @Override
+    public Object[] toArray() {
+        return snapshot.toArray();
+    }
+
+    @Override
+    public <E> E[] toArray(E[] array) {
+        return snapshot.toArray(array);
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return object == this || snapshot.equals(object);
+    }
+
+    @Override
+    public int hashCode() {
+        return snapshot.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return snapshot.toString();
+    }
+
+    private class SnapshotIterator implements Iterator<T> {
+        private final Iterator<T> iterator;
+        private T last;
+        private boolean removable;
+
+        SnapshotIterator(Iterator<T> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            last = iterator.next();
+            removable = true;
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (!removable) {
+                throw new IllegalStateException();
+            }
+            removable = false;
+            ConcurrentArraySet.this.remove(last);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package ru.ifmo.rain.bobrov.arrayset;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Immutable sorted set of strings stored front-coded in a buffer.
+ *
+ * Strings are encoded in UTF-8 and ordered by code points, which is the unsigned order of their bytes.
+ * They are split into blocks of {@code blockSize} strings: the first string of a block is stored
+ * completely, every next one as the length of the prefix shared with the previous string and the rest.
+ * The buffer starts with little-endian offsets of blocks followed by the blocks, lengths are varints.
+ * Lookups binary search the first strings of blocks and decode one block.
+ *
+ * First strings of every {@value #SAMPLE_RATE}-th block are sampled to the heap at construction,
+ * so a lookup touches the buffer only within the blocks between two samples.
+ */
+public class FrontCodedStringSet {
+    /**
+     * Order of strings by code points, the order of the set.
+     */
+    public static final Comparator<String> CODE_POINT_ORDER = FrontCodedStringSet::compareCodePoints;
+
+    private static final int SAMPLE_RATE = 64;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int blockSize;
+    private final int blocks;
+    private final int maxLength;
+    private final byte[][] samples;
+
+    FrontCodedStringSet(ByteBuffer buffer, int size, int blockSize, int maxLength) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.size = size;
+        this.blockSize = blockSize;
+        this.maxLength = maxLength;
+        blocks = (size + blockSize - 1) / blockSize;
+        samples = new byte[(blocks + SAMPLE_RATE - 1) / SAMPLE_RATE][];
+        for (int i = 0; i < samples.length; i++) {
+            Cursor cursor = new Cursor(i * SAMPLE_RATE);
+            samples[i] = Arrays.copyOf(cursor.key, cursor.length);
+        }
+    }
+
+    /**
+     * Creates set of the strings in heap memory. Strings must be valid UTF-16.
+     *
+     * @param strings strings to store
+     * @param blockSize amount of strings in a block
+     */
+    public static FrontCodedStringSet of(Collection<String> strings, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive.");
+        }
+        List<byte[]> encoded = new ArrayList<>(strings.size());
+        for (String string : strings) {
+            encoded.add(string.getBytes(StandardCharsets.UTF_8));
+        }
+        List<byte[]> sorted = new ArrayList<>(new ArraySet<>(encoded, Arrays::compareUnsigned));
+        int maxLength = 0;
+        for (byte[] string : sorted) {
+            maxLength = Math.max(maxLength, string.length);
+        }
+        return new FrontCodedStringSet(encode(sorted, blockSize), sorted.size(), blockSize, maxLength);
+    }
+
+    /**
+     * Encodes strings sorted by unsigned order of their UTF-8 bytes.
+     *
+     * @param sorted sorted unique strings in UTF-8
+     * @param blockSize amount of strings in a block
+     * @return encoded offsets and blocks
+     */
+    static ByteBuffer encode(List<byte[]> sorted, int blockSize) {
+        int blocks = (sorted.size() + blockSize - 1) / blockSize;
+        long length = (long) blocks * Integer.BYTES;
+        for (int i = 0; i < sorted.size(); i++) {
+            int shared = i % blockSize == 0 ? 0 : sharedPrefix(sorted.get(i - 1), sorted.get(i));
+            int suffix = sorted.get(i).length - shared;
+            length += (i % blockSize == 0 ? 0 : varintLength(shared)) + varintLength(suffix) + suffix;
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Strings take more than 2 GiB.");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(blocks * Integer.BYTES);
+        for (int i = 0; i < sorted.size(); i++) {
+            byte[] string = sorted.get(i);
+            int shared = 0;
+            if (i % blockSize == 0) {
+                buffer.putInt(i / blockSize * Integer.BYTES, buffer.position());
+            } else {
+                shared = sharedPrefix(sorted.get(i - 1), string);
+                putVarint(buffer, shared);
+            }
+            putVarint(buffer, string.length - shared);
+            buffer.put(string, shared, string.length - shared);
+        }
+        return buffer.clear();
+    }
+
+    private static int sharedPrefix(byte[] first, byte[] second) {
+        int mismatch = Arrays.mismatch(first, second);
+        return mismatch == -1 ? first.length : mismatch;
+    }
+
+    private static int varintLength(int value) {
+        int length = 1;
+        while ((value >>>= 7) != 0) {
+            length++;
+        }
+        return length;
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte) (value & 0x7f | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Returns stored blocks as a new buffer positioned at the first byte.
+     */
+    ByteBuffer contents() {
+        return buffer.duplicate().clear();
+    }
+
+    int getBlockSize() {
+        return blockSize;
+    }
+
+    int getMaxLength() {
+        return maxLength;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns amount of strings of the set less than the given one.
+     */
+    public int rank(String element) {
+        int pos = search(element);
+        return pos >= 0 ? pos : -(pos + 1);
+    }
+
+    /**
+     * Returns string with the given index in the order of the set.
+     *
+     * @throws IndexOutOfBoundsException if there is no such index
+     */
+    public String select(int index) {
+        return get(Objects.checkIndex(index, size));
+    }
+
+    /**
+     * Returns {@link NavigableSet} view of the set, its elements are decoded on every access.
+     */
+    public NavigableSet<String> asNavigableSet() {
+        return ArraySet.ofSorted(new Elements(), CODE_POINT_ORDER);
+    }
+
+    public boolean contains(String element) {
+        return search(element) >= 0;
+    }
+
+    public String floor(String element) {
+        return get(findPos(element, 0, -1));
+    }
+
+    public String ceiling(String element) {
+        return get(findPos(element, 0, 0));
+    }
+
+    public String lower(String element) {
+        return get(findPos(element, -1, -1));
+    }
+
+    public String higher(String element) {
+        return get(findPos(element, 1, 0));
+    }
+
+    private int findPos(String element, int shiftFound, int shiftNotFound) {
+        int pos = search(element);
+        pos = pos >= 0 ? pos + shiftFound : -(pos + 1) + shiftNotFound;
+        return -1 < pos && pos < size ? pos : -1;
+    }
+
+    /**
+     * Decodes string with the given index or returns {@code null} for {@code -1}.
+     */
+    private String get(int index) {
+        if (index < 0) {
+            return null;
+        }
+        Cursor cursor = new Cursor(index / blockSize);
+        for (int i = index % blockSize; i > 0; i--) {
+            cursor.next();
+        }
+        return new String(cursor.key, 0, cursor.length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Searches string with the same contract as {@link Collections#binarySearch}.
+     */
+    private int search(String element) {
+        byte[] probe = element.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = samples.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = Arrays.compareUnsigned(samples[middle], probe);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle * SAMPLE_RATE * blockSize;
+            }
+        }
+        if (high < 0) {
+            return -1;
+        }
+        // probe is between samples high and low, search blocks after the first one of the sample
+        low = high * SAMPLE_RATE + 1;
+        high = Math.min(blocks, low + SAMPLE_RATE - 1) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareFirst(middle, probe);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle * blockSize;
+            }
+        }
+        // probe is greater than the first string of block high and less than the first string of block low
+        Cursor cursor = new Cursor(high);
+        int index = high * blockSize;
+        int end = Math.min(size, index + blockSize);
+        while (++index < end) {
+            cursor.next();
+            int comparison = Arrays.compareUnsigned(cursor.key, 0, cursor.length, probe, 0, probe.length);
+            if (comparison == 0) {
+                return index;
+            } else if (comparison > 0) {
+                return -(index + 1);
+            }
+        }
+        return -(end + 1);
+    }
+
+    /**
+     * Compares the first string of the block with the probe without decoding it.
+     */
+    private int compareFirst(int block, byte[] probe) {
+        int position = buffer.getInt(block * Integer.BYTES);
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get(position++);
+            length |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        int common = Math.min(length, probe.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Byte.compareUnsigned(buffer.get(position + i), probe[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(length, probe.length);
+    }
+
+    private static int compareCodePoints(String first, String second) {
+        int common = Math.min(first.length(), second.length());
+        for (int i = 0; i < common; i++) {
+            char a = first.charAt(i);
+            char b = second.charAt(i);
+            if (a != b) {
+                return Integer.compare(codePointRank(a), codePointRank(b));
+            }
+        }
+        return Integer.compare(first.length(), second.length());
+    }
+
+    /**
+     * Moves surrogates above other chars, so chars are ordered as the code points they encode.
+     */
+    private static int codePointRank(char c) {
+        return c < Character.MIN_SURROGATE ? c : Character.isSurrogate(c) ? c + 0x2000 : c - 0x800;
+    }
+
+    private class Elements extends AbstractList<String> implements RandomAccess {
+        @Override
+        public String get(int index) {
+            return select(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Sequential decoder of strings of a block.
+     */
+    private class Cursor {
+        private final byte[] key = new byte[maxLength];
+        private int length;
+        private int position;
+
+        Cursor(int block) {
+            position = buffer.getInt(block * Integer.BYTES);
+            read(0);
+        }
+
+        void next() {
+            read(readVarint());
+        }
+
+        private void read(int shared) {
+            int suffix = readVarint();
+            buffer.get(position, key, shared, suffix);
+            position += suffix;
+            length = shared + suffix;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get(position++);
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package ru.ifmo.rain.bobrov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable sorted set of {@code int} values stored in a sorted array.
+ *
+ * Navigation methods work with primitives and return indices, {@code -1} means there is no such element.
+ * {@link #asNavigableSet()} gives a boxing {@link NavigableSet} view of the same array.
+ *
+ * Set can be built with a search index for large sets that are mostly queried with {@link #contains}.
+ * The index is a copy of the array in Eytzinger (breadth-first) order: node {@code k} has children
+ * {@code 2k} and {@code 2k + 1}, so the first levels share a few cache lines, and a descent takes
+ * no branches. Java has no prefetch instruction, so every step also loads the node three levels below,
+ * which starts fetching its cache line while the next levels are compared. Other methods use the sorted array.
+ */
+public class IntArraySet {
+    private final int[] elements;
+    private final int[] index;
+
+    public IntArraySet() {
+        elements = new int[0];
+        index = null;
+    }
+
+    public IntArraySet(int... values) {
+        this(values, false);
+    }
+
+    /**
+     * @param values elements of the set
+     * @param searchIndex whether {@link #contains} should use a search index, which takes as much memory as the set
+     */
+    public IntArraySet(int[] values, boolean searchIndex) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        elements = size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+        if (searchIndex) {
+            index = new int[elements.length + 1];
+            fillIndex(0, 1);
+        } else {
+            index = null;
+        }
+    }
+
+    private int fillIndex(int rank, int node) {
+        if (node < index.length) {
+            rank = fillIndex(rank, 2 * node);
+            index[node] = elements[rank++];
+            rank = fillIndex(rank, 2 * node + 1);
+        }
+        return rank;
+    }
+
+    public int size() {
+        return elements.length;
+    }
+
+    public boolean isEmpty() {
+        return elements.length == 0;
+    }
+
+    public int getInt(int index) {
+        return elements[index];
+    }
+
+    public boolean contains(int element) {
+        return index != null ? indexContains(element) : Arrays.binarySearch(elements, element) >= 0;
+    }
+
+    public int floorIndex(int element) {
+        return findPos(element, 0, -1);
+    }
+
+    public int ceilingIndex(int element) {
+        return findPos(element, 0, 0);
+    }
+
+    public int lowerIndex(int element) {
+        return findPos(element, -1, -1);
+    }
+
+    public int higherIndex(int element) {
+        return findPos(element, 1, 0);
+    }
+
+    public int floor(int element, int absent) {
+        return getOrDefault(floorIndex(element), absent);
+    }
+
+    public int ceiling(int element, int absent) {
+        return getOrDefault(ceilingIndex(element), absent);
+    }
+
+    public int lower(int element, int absent) {
+        return getOrDefault(lowerIndex(element), absent);
+    }
+
+    public int higher(int element, int absent) {
+        return getOrDefault(higherIndex(element), absent);
+    }
+
+    public int[] toArray() {
+        return elements.clone();
+    }
+
+    public NavigableSet<Integer> asNavigableSet() {
+        return ArraySet.ofSorted(new Elements(), null);
+    }
+
+    private int getOrDefault(int pos, int absent) {
+        return pos >= 0 ? elements[pos] : absent;
+    }
+
+    private boolean indexContains(int element) {
+        int node = 1;
+        int ahead = 0;
+        while (node < index.length) {
+            ahead += index[(int) Math.min((long) node << 3, index.length - 1)];
+            node = 2 * node + (index[node] < element ? 1 : 0);
+        }
+        // never true, keeps loads of the nodes below from being removed
+        if (node < 0 && ahead == element) {
+            throw new AssertionError();
+        }
+        // leave the right turns made after the last left turn, the node there is the first element not less than element
+        node >>>= Integer.numberOfTrailingZeros(~node) + 1;
+        return node != 0 && index[node] == element;
+    }
+
+    private int findPos(int element, int shiftFound, int shiftNotFound) {
+        int pos = Arrays.binarySearch(elements, element);
+        pos = pos >= 0 ? pos + shiftFound : -(pos + 1) + shiftNotFound;
+        return -1 < pos && pos < elements.length ? pos : -1;
+    }
+
+    private class Elements extends AbstractList<Integer> implements RandomAccess {
+        @Override
+        public Integer get(int index) {
+            return elements[index];
+        }
+
+        @Override
+        public int size() {
+            return elements.length;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package ru.ifmo.rain.bobrov.arrayset;
+
+import java.util.*;
+
+/**
+ * Immutable sorted set of {@code long} values stored in a sorted array.
+ *
+ * Navigation methods work with primitives and return indices, {@code -1} means there is no such element.
+ * {@link #asNavigableSet()} gives a boxing {@link NavigableSet} view of the same array.
+ *
+ * Set can be built with a search index for large sets that are mostly queried with {@link #contains}.
+ * The index is a copy of the array in Eytzinger (breadth-first) order: node {@code k} has children
+ * {@code 2k} and {@code 2k + 1}, so the first levels share a few cache lines, and a descent takes
+ * no branches. Java has no prefetch instruction, so every step also loads the node three levels below,
+ * which starts fetching its cache line while the next levels are compared. Other methods use the sorted array.
+ */
+public class LongArraySet {
+    private final long[] elements;
+    private final long[] index;
+
+    public LongArraySet() {
+        elements = new long[0];
+        index = null;
+    }
+
+    public LongArraySet(long... values) {
+        this(values, false);
+    }
+
+    /**
+     * @param values elements of the set
+     * @param searchIndex whether {@link #contains} should use a search index, which takes as much memory as the set
+     */
+    public LongArraySet(long[] values, boolean searchIndex) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (size == 0 || sorted[size - 1] != sorted[i]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        elements = size == sorted.length ? sorted : Arrays.copyOf(sorted, size);
+        if (searchIndex) {
+            index = new long[elements.length + 1];
+            fillIndex(0, 1);
+        } else {
+            index = null;
+        }
+    }
+
+    private int fillIndex(int rank, int node) {
+        if (node < index.length) {
+            rank = fillIndex(rank, 2 * node);
+            index[node] = elements[rank++];
+            rank = fillIndex(rank, 2 * node + 1);
+        }
+        return rank;
+    }
+
+    public int size() {
+        return elements.length;
+    }
+
+    public boolean isEmpty() {
+        return elements.length == 0;
+    }
+
+    public long getLong(int index) {
+        return elements[index];
+    }
+
+    public boolean contains(long element) {
+        return index != null ? indexContains(element) : Arrays.binarySearch(elements, element) >= 0;
+    }
+
+    public int floorIndex(long element) {
+        return findPos(element, 0, -1);
+    }
+
+    public int ceilingIndex(long element) {
+        return findPos(element, 0, 0);
+    }
+
+    public int lowerIndex(long element) {
+        return findPos(element, -1, -1);
+    }
+
+    public int higherIndex(long element) {
+        return findPos(element, 1, 0);
+    }
+
+    public long floor(long element, long absent) {
+        return getOrDefault(floorIndex(element), absent);
+    }
+
+    public long ceiling(long element, long absent) {
+        return getOrDefault(ceilingIndex(element), absent);
+    }
+
+    public long lower(long element, long absent) {
+        return getOrDefault(lowerIndex(element), absent);
+    }
+
+    public long higher(long element, long absent) {
+        return getOrDefault(higherIndex(element), absent);
+    }
+
+    public long[] toArray() {
+        return elements.clone();
+    }
+
+    public NavigableSet<Long> asNavigableSet() {
+        return ArraySet.ofSorted(new Elements(), null);
+    }
+
+    private long getOrDefault(int pos, long absent) {
+        return pos >= 0 ? elements[pos] : absent;
+    }
+
+    private boolean indexContains(long element) {
+        int node = 1;
+        long ahead = 0;
+        while (node < index.length) {
+            ahead += index[(int) Math.min((long) node << 3, index.length - 1)];
+            node = 2 * node + (index[node] < element ? 1 : 0);
+        }
+        // never true, keeps loads of the nodes below from being removed
+        if (node < 0 && ahead == element) {
+            throw new AssertionError();
+        }
+        // leave the right turns made after the last left turn, the node there is the first element not less than element
+        node >>>= Integer.numberOfTrailingZeros(~node) + 1;
+        return node != 0 && index[node] == element;
+    }
+
+    private int findPos(long element, int shiftFound, int shiftNotFound) {
+        int pos = Arrays.binarySearch(elements, element);
+        pos = pos >= 0 ? pos + shiftFound : -(pos + 1) + shiftNotFound;
+        return -1 < pos && pos < elements.length ? pos : -1;
+    }
+
+    private class Elements extends AbstractList<Long> implements RandomAccess {
+        @Override
+        public Long get(int index) {
+            return elements[index];
+        }
+
+        @Override
+        public int size() {
+            return elements.length;
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package ru.ifmo.rain.bobrov.arrayset;
+
+import java.util.*;
+
+/**
+ * Mutable sorted set built of two levels, like a log-structured merge tree.
+ *
+ * The main level is a sorted array, removed elements of it are marked in a bit set.
+ * Added elements go to a small sorted delta list. When the delta and removed marks together
+ * exceed the batch size of {@code sqrt(n)}, both levels are merged into a new main array.
+ * Lookups search both levels in {@code O(log n)}.
+ *
+ * Unlike the {@link NavigableSet} contract, views returned by {@link #subSet}, {@link #headSet},
+ * {@link #tailSet} and {@link #descendingSet()} are not backed by the set: they are read-only
+ * snapshots of the set at the moment of the call, and their modification methods throw
+ * {@link UnsupportedOperationException}. A snapshot shares the main array, which is copied
+ * on the next write to it, so taking a snapshot costs only the pending merge.
+ */
+public class MutableArraySet<T> extends AbstractSet<T> implements NavigableSet<T> {
+    private static final int MIN_BATCH = 32;
+
+    private final Comparator<? super T> comparator;
+    private T[] main;
+    private int mainSize;
+    private final BitSet removed = new BitSet();
+    private int removedCount;
+    private final List<T> delta = new ArrayList<>();
+    private boolean shared;
+    private int modCount;
+    // merges don't change contents and don't count as modifications, iterators find their positions again
+    private int merges;
+
+    public MutableArraySet() {
+        this((Comparator<T>) null);
+    }
+
+    public MutableArraySet(Comparator<? super T> comparator) {
+        this(Collections.emptyList(), comparator);
+    }
+
+    public MutableArraySet(Collection<? extends T> collection) {
+        this(collection, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public MutableArraySet(Collection<? extends T> collection, Comparator<? super T> comparator) {
+        this.comparator = comparator;
+        main = (T[]) new ArraySet<T>(collection, comparator).toArray();
+        mainSize = main.length;
+    }
+
+    @Override
+    public boolean add(T element) {
+        int pos = mainSearch(element);
+        if (pos >= 0) {
+            if (!removed.get(pos)) {
+                return false;
+            }
+            removed.clear(pos);
+            removedCount--;
+            if (shared) {
+                main = main.clone();
+                shared = false;
+            }
+            main[pos] = element;
+            modCount++;
+            return true;
+        }
+        pos = deltaSearch(element);
+        if (pos >= 0) {
+            return false;
+        }
+        delta.add(-(pos + 1), element);
+        modCount++;
+        mergeIfFull();
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object object) {
+        T element = (T) object;
+        int pos = deltaSearch(element);
+        if (pos >= 0) {
+            delta.remove(pos);
+            modCount++;
+            return true;
+        }
+        pos = mainSearch(element);
+        if (pos < 0 || removed.get(pos)) {
+            return false;
+        }
+        removeMain(pos);
+        mergeIfFull();
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object object) {
+        int pos = mainSearch((T) object);
+        return pos >= 0 ? !removed.get(pos) : deltaSearch((T) object) >= 0;
+    }
+
+    @Override
+    public T pollFirst() {
+        if (isEmpty()) {
+            return null;
+        }
+        T element = first();
+        remove(element);
+        return element;
+    }
+
+    @Override
+    public T pollLast() {
+        if (isEmpty()) {
+            return null;
+        }
+        T element = last();
+        remove(element);
+        return element;
+    }
+
+    @Override
+    public void clear() {
+        main = Arrays.copyOf(main, 0);
+        mainSize = 0;
+        shared = false;
+        removed.clear();
+        removedCount = 0;
+        delta.clear();
+        modCount++;
+    }
+
+    @Override
+    public T floor(T element) {
+        return max(mainElement(mainFloor(findPos(element, 0, -1))), deltaElement(deltaPos(element, 0, -1)));
+    }
+
+    @Override
+    public T ceiling(T element) {
+        return min(mainElement(mainCeiling(findPos(element, 0, 0))), deltaElement(deltaPos(element, 0, 0)));
+    }
+
+    @Override
+    public T lower(T element) {
+        return max(mainElement(mainFloor(findPos(element, -1, -1))), deltaElement(deltaPos(element, -1, -1)));
+    }
+
+    @Override
+    public T higher(T element) {
+        return min(mainElement(mainCeiling(findPos(element, 1, 0))), deltaElement(deltaPos(element, 1, 0)));
+    }
+
+    @Override
+    public T first() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return min(mainElement(mainCeiling(0)), delta.isEmpty() ? null : delta.get(0));
+    }
+
+    @Override
+    public T last() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return max(mainElement(mainFloor(mainSize - 1)), delta.isEmpty() ? null : delta.get(delta.size() - 1));
+    }
+
+    @Override
+    public int size() {
+        return mainSize - removedCount + delta.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Comparator<? super T> comparator() {
+        return comparator;
+    }
+
+    /**
+     * Iterates over the set in ascending order. Iterator supports removal,
+     * other modifications of the set during iteration cause {@link ConcurrentModificationException}.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new MainIterator(false);
+    }
+
+    /**
+     * Iterates over the set in descending order, the same way as {@link #iterator()}.
+     */
+    @Override
+    public Iterator<T> descendingIterator() {
+        return new MainIterator(true);
+    }
+
+    /**
+     * Iterator over the merged main array. Removals only mark elements, when marks fill a batch
+     * the array is merged. A merge does not change contents, so after a merge caused by
+     * the iterator or by a read of the set the iterator finds its elements in the new array.
+     */
+    private class MainIterator implements Iterator<T> {
+        private final boolean descending;
+        private int expectedModCount;
+        private int expectedMerges;
+        private int next;
+        private T nextElement;
+        private int last = -1;
+        private T lastElement;
+
+        MainIterator(boolean descending) {
+            this.descending = descending;
+            merge();
+            expectedModCount = modCount;
+            expectedMerges = merges;
+            setNext(descending ? mainFloor(mainSize - 1) : mainCeiling(0));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != -1;
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == -1) {
+                throw new NoSuchElementException();
+            }
+            sync();
+            last = next;
+            lastElement = nextElement;
+            setNext(step(next));
+            return lastElement;
+        }
+
+        @Override
+        public void remove() {
+            if (last == -1) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            sync();
+            removeMain(last);
+            last = -1;
+            mergeIfFull();
+            expectedModCount = modCount;
+        }
+
+        private void setNext(int pos) {
+            next = pos;
+            nextElement = pos != -1 ? main[pos] : null;
+        }
+
+        private void sync() {
+            if (merges != expectedMerges) {
+                expectedMerges = merges;
+                // a merge keeps the returned element unless the iterator removed it, then last is -1
+                last = last != -1 ? mainSearch(lastElement) : -1;
+                next = next != -1 ? mainSearch(nextElement) : -1;
+            }
+        }
+
+        private int step(int pos) {
+            if (descending) {
+                return pos > 0 ? mainFloor(pos - 1) : -1;
+            }
+            return pos + 1 < mainSize ? mainCeiling(pos + 1) : -1;
+        }
+    }
+
+    @Override
+    public NavigableSet<T> descendingSet() {
+        return snapshot().descendingSet();
+    }
+
+    @Override
+    public NavigableSet<T> subSet(T fromElement, boolean fromInclusive, T toElement, boolean toInclusive) {
+        return snapshot().subSet(fromElement, fromInclusive, toElement, toInclusive);
+    }
+
+    @Override
+    public NavigableSet<T> headSet(T toElement, boolean inclusive) {
+        return snapshot().headSet(toElement, inclusive);
+    }
+
+    @Override
+    public NavigableSet<T> tailSet(T fromElement, boolean inclusive) {
+        return snapshot().tailSet(fromElement, inclusive);
+    }
+
+    @Override
+    public SortedSet<T> subSet(T fromElement, T toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> headSet(T toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<T> tailSet(T fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    private ArraySet<T> snapshot() {
+        merge();
+        shared = true;
+        return ArraySet.ofSorted(Arrays.asList(main), comparator);
+    }
+
+    private void removeMain(int pos) {
+        removed.set(pos);
+        removedCount++;
+        modCount++;
+    }
+
+    private boolean isFull() {
+        return delta.size() + removedCount > Math.max(MIN_BATCH, (int) Math.sqrt(mainSize));
+    }
+
+    private void mergeIfFull() {
+        if (isFull()) {
+            merge();
+        }
+    }
+
+    private void merge() {
+        if (delta.isEmpty() && removedCount == 0) {
+            return;
+        }
+        T[] merged = Arrays.copyOf(main, size());
+        int size = 0;
+        int j = 0;
+        for (int i = 0; i < mainSize; i++) {
+            if (removed.get(i)) {
+                continue;
+            }
+            while (j < delta.size() && compare(delta.get(j), main[i]) < 0) {
+                merged[size++] = delta.get(j++);
+            }
+            merged[size++] = main[i];
+        }
+        while (j < delta.size()) {
+            merged[size++] = delta.get(j++);
+        }
+        main = merged;
+        mainSize = size;
+        shared = false;
+        removed.clear();
+        removedCount = 0;
+        delta.clear();
+        merges++;
+    }
+
+    private int mainSearch(T element) {
+        return Arrays.binarySearch(main, 0, mainSize, element, comparator);
+    }
+
+    private int deltaSearch(T element) {
+        return Collections.binarySearch(delta, element, comparator);
+    }
+
+    private int findPos(T element, int shiftFound, int shiftNotFound) {
+        int pos = mainSearch(element);
+        return pos >= 0 ? pos + shiftFound : -(pos + 1) + shiftNotFound;
+    }
+
+    private int deltaPos(T element, int shiftFound, int shiftNotFound) {
+        int pos = deltaSearch(element);
+        pos = pos >= 0 ? pos + shiftFound : -(pos + 1) + shiftNotFound;
+        return -1 < pos && pos < delta.size() ? pos : -1;
+    }
+
+    private int mainFloor(int pos) {
+        return pos < 0 ? -1 : removed.previousClearBit(Math.min(pos, mainSize - 1));
+    }
+
+    private int mainCeiling(int pos) {
+        if (pos >= mainSize) {
+            return -1;
+        }
+        pos = removed.nextClearBit(pos);
+        return pos < mainSize ? pos : -1;
+    }
+
+    private T mainElement(int pos) {
+        return pos >= 0 ? main[pos] : null;
+    }
+
+    private T deltaElement(int pos) {
+        return pos >= 0 ? delta.get(pos) : null;
+    }
+
+    private T min(T first, T second) {
+        return first == null || second != null && compare(second, first) < 0 ? second : first;
+    }
+
+    private T max(T first, T second) {
+        return first == null || second != null && compare(second, first) > 0 ? second : first;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(T firstElement, T secondElement) {
+        return (comparator == null) ? ((Comparable<T>) firstElement).compareTo(secondElement) :
+                comparator.compare(firstElement, secondElement);
+    }
+}
@@ -0,0 +1,166 @@
+package ru.ifmo.rain.bobrov.arrayset;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+/**
+ * Immutable sorted set of byte keys of the same length stored outside of the heap.
+ *
+ * Keys are ordered as unsigned big-endian numbers, like {@link Arrays#compareUnsigned(byte[], byte[])},
+ * and are stored back to back in a direct or memory-mapped buffer. Files with a header and the same layout
+ * are written and mapped by {@link ArraySetFormat#writeBytes} and {@link ArraySetFormat#mapBytes}.
+ * A buffer is limited to 2 GiB.
+ * Navigation methods return indices, {@code -1} means there is no such key.
+ */
+public class OffHeapBytesSet {
+    private static final Comparator<byte[]> ORDER = Arrays::compareUnsigned;
+
+    private final ByteBuffer buffer;
+    private final int width;
+    private final int size;
+
+    OffHeapBytesSet(ByteBuffer buffer, int width) {
+        this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+        this.width = width;
+        size = buffer.capacity() / width;
+    }
+
+    public static OffHeapBytesSet of(int width, Collection<byte[]> keys) {
+        checkWidth(width);
+        List<byte[]> sorted = new ArrayList<>(new ArraySet<>(keys, ORDER));
+        if (sorted.size() > Integer.MAX_VALUE / width) {
+            throw new IllegalArgumentException("Too many keys: " + sorted.size());
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(sorted.size() * width);
+        for (byte[] key : sorted) {
+            if (key.length != width) {
+                throw new IllegalArgumentException("Key of " + key.length + " bytes in set of " + width + " byte keys.");
+            }
+            buffer.put(key);
+        }
+        return new OffHeapBytesSet(buffer, width);
+    }
+
+    private static void checkWidth(int width) {
+        if (width <= 0) {
+            throw new IllegalArgumentException("Key width must be positive.");
+        }
+    }
+
+    /**
+     * Returns stored keys as a new buffer positioned at the first byte.
+     */
+    ByteBuffer contents() {
+        return buffer.duplicate().clear();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public byte[] getKey(int index) {
+        byte[] key = new byte[width];
+        getKey(index, key);
+        return key;
+    }
+
+    /**
+     * Copies key to the given array without allocation.
+     */
+    public void getKey(int index, byte[] destination) {
+        Objects.checkIndex(index, size);
+        buffer.get(index * width, destination, 0, width);
+    }
+
+    public boolean contains(byte[] key) {
+        return key.length == width && search(key) >= 0;
+    }
+
+    public int floorIndex(byte[] key) {
+        return findPos(key, 0, -1);
+    }
+
+    public int ceilingIndex(byte[] key) {
+        return findPos(key, 0, 0);
+    }
+
+    public int lowerIndex(byte[] key) {
+        return findPos(key, -1, -1);
+    }
+
+    public int higherIndex(byte[] key) {
+        return findPos(key, 1, 0);
+    }
+
+    public NavigableSet<byte[]> asNavigableSet() {
+        return ArraySet.ofSorted(new Elements(), ORDER);
+    }
+
+    private int search(byte[] key) {
+        if (key.length != width) {
+            throw new IllegalArgumentException("Key of " + key.length + " bytes in set of " + width + " byte keys.");
+        }
+        ByteBuffer probe = ByteBuffer.wrap(key);
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareAt(middle * width, probe);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Compares stored key at the offset with the probe, eight bytes at a time.
+     */
+    private int compareAt(int offset, ByteBuffer probe) {
+        int i = 0;
+        for (; i + Long.BYTES <= width; i += Long.BYTES) {
+            int comparison = Long.compareUnsigned(buffer.getLong(offset + i), probe.getLong(i));
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        for (; i < width; i++) {
+            int comparison = Byte.compareUnsigned(buffer.get(offset + i), probe.get(i));
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+
+    private int findPos(byte[] key, int shiftFound, int shiftNotFound) {
+        int pos = search(key);
+        pos = pos >= 0 ? pos + shiftFound : -(pos + 1) + shiftNotFound;
+        return -1 < pos && pos < size ? pos : -1;
+    }
+
+    private class Elements extends AbstractList<byte[]> implements RandomAccess {
+        @Override
+        public byte[] get(int index) {
+            return getKey(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package ru.ifmo.rain.bobrov.arrayset;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+/**
+ * Immutable sorted set of {@code long} values stored outside of the heap.
+ *
+ * Values are kept in a direct or memory-mapped buffer as little-endian longs, so the set
+ * adds nothing to GC work. Files with a header and the same layout are written and mapped
+ * by {@link ArraySetFormat#writeLongs} and {@link ArraySetFormat#mapLongs}.
+ * A buffer is limited to 2 GiB, so the set holds at most {@code 2^28 - 1} values.
+ * Navigation methods follow {@link LongArraySet}.
+ */
+public class OffHeapLongSet {
+    private final ByteBuffer buffer;
+    private final int size;
+
+    OffHeapLongSet(ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        size = buffer.capacity() / Long.BYTES;
+    }
+
+    public static OffHeapLongSet of(long... values) {
+        long[] sorted = new LongArraySet(values).toArray();
+        if (sorted.length > Integer.MAX_VALUE / Long.BYTES) {
+            throw new IllegalArgumentException("Too many values: " + sorted.length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(sorted.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asLongBuffer().put(sorted);
+        return new OffHeapLongSet(buffer);
+    }
+
+    /**
+     * Returns stored keys as a new buffer positioned at the first byte.
+     */
+    ByteBuffer contents() {
+        return buffer.duplicate().clear();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getLong(int index) {
+        Objects.checkIndex(index, size);
+        return buffer.getLong(index * Long.BYTES);
+    }
+
+    public boolean contains(long element) {
+        return search(element) >= 0;
+    }
+
+    public int floorIndex(long element) {
+        return findPos(element, 0, -1);
+    }
+
+    public int ceilingIndex(long element) {
+        return findPos(element, 0, 0);
+    }
+
+    public int lowerIndex(long element) {
+        return findPos(element, -1, -1);
+    }
+
+    public int higherIndex(long element) {
+        return findPos(element, 1, 0);
+    }
+
+    public long floor(long element, long absent) {
+        return getOrDefault(floorIndex(element), absent);
+    }
+
+    public long ceiling(long element, long absent) {
+        return getOrDefault(ceilingIndex(element), absent);
+    }
+
+    public long lower(long element, long absent) {
+        return getOrDefault(lowerIndex(element), absent);
+    }
+
+    public long higher(long element, long absent) {
+        return getOrDefault(higherIndex(element), absent);
+    }
+
+    public NavigableSet<Long> asNavigableSet() {
+        return ArraySet.ofSorted(new Elements(), null);
+    }
+
+    private long getOrDefault(int pos, long absent) {
+        return pos >= 0 ? buffer.getLong(pos * Long.BYTES) : absent;
+    }
+
+    private int search(long element) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long value = buffer.getLong(middle * Long.BYTES);
+            if (value < element) {
+                low = middle + 1;
+            } else if (value > element) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private int findPos(long element, int shiftFound, int shiftNotFound) {
+        int pos = search(element);
+        pos = pos >= 0 ? pos + shiftFound : -(pos + 1) + shiftNotFound;
+        return -1 < pos && pos < size ? pos : -1;
+    }
+
+    private class Elements extends AbstractList<Long> implements RandomAccess {
+        @Override
+        public Long get(int index) {
+            return getLong(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ru.ifmo.rain.bobrov.arrayset.test;
+
+import org.junit.*;
+import ru.ifmo.rain.bobrov.arrayset.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of sets through {@link ArraySetFormat} files and rejection of invalid files.
+ */
+public class ArraySetFormatTest {
+    private final Random random = new Random(1928374650192837L);
+
+    @Test
+    public void longs() throws IOException {
+        for (int test = 0; test < 50; test++) {
+            long[] values = random.longs(random.nextInt(1000)).toArray();
+            Path file = PrimitiveArraySetTest.tempFile();
+            ArraySetFormat.writeLongs(file, OffHeapLongSet.of(values));
+            OffHeapLongSet mapped = ArraySetFormat.mapLongs(file);
+            assertArrayEquals(new LongArraySet(values).asNavigableSet().toArray(), mapped.asNavigableSet().toArray());
+        }
+    }
+
+    @Test
+    public void bytes() throws IOException {
+        for (int test = 0; test < 50; test++) {
+            int width = 1 + random.nextInt(8);
+            List<byte[]> keys = new ArrayList<>();
+            for (int i = random.nextInt(1000); i > 0; i--) {
+                byte[] key = new byte[width];
+                random.nextBytes(key);
+                keys.add(key);
+            }
+            OffHeapBytesSet set = OffHeapBytesSet.of(width, keys);
+            Path file = PrimitiveArraySetTest.tempFile();
+            ArraySetFormat.writeBytes(file, set);
+            OffHeapBytesSet mapped = ArraySetFormat.mapBytes(file);
+            assertEquals(width, mapped.getWidth());
+            assertArrayEquals(set.asNavigableSet().toArray(), mapped.asNavigableSet().toArray());
+        }
+    }
+
+    @Test
+    public void strings() throws IOException {
+        for (int test = 0; test < 50; test++) {
+            List<String> strings = FrontCodedStringSetTest.randomStrings(random, random.nextInt(3000));
+            Path file = PrimitiveArraySetTest.tempFile();
+            if (random.nextBoolean()) {
+                ArraySetFormat.writeStrings(file, strings);
+            } else {
+                ArraySetFormat.writeStrings(file, strings, 1 + random.nextInt(4));
+            }
+            FrontCodedStringSetTest.checkSet(strings, ArraySetFormat.mapStrings(file));
+        }
+    }
+
+    @Test
+    public void invalidFiles() throws IOException {
+        Path file = PrimitiveArraySetTest.tempFile();
+        ArraySetFormat.writeLongs(file, OffHeapLongSet.of(1, 2, 3));
+        byte[] valid = Files.readAllBytes(file);
+        // another kind of keys
+        assertInvalid(() -> ArraySetFormat.mapStrings(file));
+        assertInvalid(() -> ArraySetFormat.mapBytes(file));
+
+        Path truncated = write(Arrays.copyOf(valid, valid.length - 1));
+        assertInvalid(() -> ArraySetFormat.mapLongs(truncated));
+        Path header = write(Arrays.copyOf(valid, 10));
+        assertInvalid(() -> ArraySetFormat.mapLongs(header));
+
+        byte[] version = valid.clone();
+        version[4]++;
+        Path otherVersion = write(version);
+        assertInvalid(() -> ArraySetFormat.mapLongs(otherVersion));
+
+        byte[] magic = valid.clone();
+        magic[0]++;
+        Path otherMagic = write(magic);
+        assertInvalid(() -> ArraySetFormat.mapLongs(otherMagic));
+
+        byte[] size = valid.clone();
+        ByteBuffer.wrap(size).order(ByteOrder.LITTLE_ENDIAN).putInt(12, 4);
+        Path wrongSize = write(size);
+        assertInvalid(() -> ArraySetFormat.mapLongs(wrongSize));
+    }
+
+    private interface Mapping {
+        void map() throws IOException;
+    }
+
+    private static void assertInvalid(Mapping mapping) {
+        try {
+            mapping.map();
+            fail("Invalid set file was mapped");
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static Path write(byte[] contents) throws IOException {
+        Path file = PrimitiveArraySetTest.tempFile();
+        Files.write(file, contents);
+        return file;
+    }
+}
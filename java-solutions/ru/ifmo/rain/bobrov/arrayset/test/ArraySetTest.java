@@ -0,0 +1,338 @@
+package ru.ifmo.rain.bobrov.arrayset.test;
+
+import org.junit.*;
+import ru.ifmo.rain.bobrov.arrayset.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Randomized comparison of {@link ArraySet} with {@link TreeSet}.
+ */
+public class ArraySetTest {
+    private static final List<Comparator<Integer>> COMPARATORS = Arrays.asList(
+            null, Comparator.reverseOrder(), Comparator.comparing(i -> i / 3));
+
+    private final Random random = new Random(4875043285743285204L);
+
+    @Test
+    public void navigation() {
+        for (int test = 0; test < 300; test++) {
+            Comparator<Integer> comparator = COMPARATORS.get(random.nextInt(COMPARATORS.size()));
+            List<Integer> elements = randomElements(random.nextInt(200), 300);
+            checkSet(treeSet(elements, comparator), new ArraySet<>(elements, comparator));
+        }
+    }
+
+    @Test
+    public void views() {
+        for (int test = 0; test < 300; test++) {
+            Comparator<Integer> comparator = COMPARATORS.get(random.nextInt(COMPARATORS.size()));
+            List<Integer> elements = randomElements(random.nextInt(200), 300);
+            NavigableSet<Integer> expected = treeSet(elements, comparator);
+            NavigableSet<Integer> actual = new ArraySet<>(elements, comparator);
+            for (int depth = 0; depth < 4; depth++) {
+                int from = random.nextInt(320) - 10;
+                int to = random.nextInt(320) - 10;
+                boolean fromInclusive = random.nextBoolean();
+                boolean toInclusive = random.nextBoolean();
+                NavigableSet<Integer> expectedView;
+                try {
+                    switch (random.nextInt(4)) {
+                        case 0:
+                            expectedView = expected.descendingSet();
+                            actual = actual.descendingSet();
+                            break;
+                        case 1:
+                            expectedView = expected.headSet(to, toInclusive);
+                            actual = actual.headSet(to, toInclusive);
+                            break;
+                        case 2:
+                            expectedView = expected.tailSet(from, fromInclusive);
+                            actual = actual.tailSet(from, fromInclusive);
+                            break;
+                        default:
+                            if (expected.comparator() != null && expected.comparator().compare(from, to) > 0
+                                    || expected.comparator() == null && from > to) {
+                                int swap = from;
+                                from = to;
+                                to = swap;
+                            }
+                            expectedView = expected.subSet(from, fromInclusive, to, toInclusive);
+                            actual = actual.subSet(from, fromInclusive, to, toInclusive);
+                    }
+                } catch (IllegalArgumentException e) {
+                    // bound outside of the range of a view, TreeSet rejects it
+                    break;
+                }
+                expected = expectedView;
+                checkSet(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void immutable() {
+        NavigableSet<Integer> set = new ArraySet<>(Arrays.asList(3, 1, 2));
+        for (NavigableSet<Integer> view : Arrays.asList(set, set.descendingSet(), set.headSet(2, true))) {
+            assertUnsupported(() -> view.add(5));
+            assertUnsupported(() -> view.remove(1));
+            assertUnsupported(view::pollFirst);
+            assertUnsupported(view::clear);
+            assertUnsupported(() -> {
+                Iterator<Integer> iterator = view.iterator();
+                iterator.next();
+                iterator.remove();
+            });
+        }
+        assertEquals(Arrays.asList(1, 2, 3), new ArrayList<>(set));
+    }
+
+    @Test
+    public void spliterator() {
+        for (int test = 0; test < 100; test++) {
+            Comparator<Integer> comparator = COMPARATORS.get(random.nextInt(COMPARATORS.size()));
+            List<Integer> elements = randomElements(random.nextInt(5000), 10000);
+            NavigableSet<Integer> expected = treeSet(elements, comparator);
+            NavigableSet<Integer> actual = new ArraySet<>(elements, comparator);
+            if (random.nextBoolean()) {
+                expected = expected.descendingSet();
+                actual = actual.descendingSet();
+            }
+            Spliterator<Integer> spliterator = actual.spliterator();
+            assertEquals(expected.size(), spliterator.getExactSizeIfKnown());
+            assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.SIZED));
+            assertEquals(new ArrayList<>(expected), actual.parallelStream().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void setAlgebra() {
+        for (int test = 0; test < 200; test++) {
+            Comparator<Integer> comparator = COMPARATORS.get(random.nextInt(COMPARATORS.size()));
+            // sizes of different magnitude use galloping, similar sizes a linear merge
+            List<Integer> first = randomElements(random.nextInt(random.nextBoolean() ? 10 : 1000), 2000);
+            List<Integer> second = randomElements(random.nextInt(1000), 2000);
+            ArraySet<Integer> firstSet = new ArraySet<>(first, comparator);
+            ArraySet<Integer> secondSet = new ArraySet<>(second, comparator);
+
+            NavigableSet<Integer> union = treeSet(first, comparator);
+            union.addAll(treeSet(second, comparator));
+            NavigableSet<Integer> intersection = treeSet(first, comparator);
+            intersection.retainAll(treeSet(second, comparator));
+            NavigableSet<Integer> difference = treeSet(first, comparator);
+            difference.removeAll(treeSet(second, comparator));
+
+            checkSet(union, firstSet.union(secondSet));
+            checkSet(intersection, firstSet.intersect(secondSet));
+            checkSet(difference, firstSet.difference(secondSet));
+        }
+    }
+
+    @Test
+    public void setAlgebraOfViews() {
+        ArraySet<Integer> first = new ArraySet<>(randomElements(1000, 2000));
+        ArraySet<Integer> second = new ArraySet<>(randomElements(1000, 2000));
+        ArraySet<Integer> firstView = (ArraySet<Integer>) first.descendingSet().descendingSet().subSet(100, true, 1500, false);
+        ArraySet<Integer> secondView = (ArraySet<Integer>) second.tailSet(700, true);
+
+        NavigableSet<Integer> expected = new TreeSet<>(firstView);
+        expected.retainAll(secondView);
+        checkSet(expected, firstView.intersect(secondView));
+        try {
+            first.union((ArraySet<Integer>) second.descendingSet());
+            fail("Sets with different comparators");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void batchProbes() {
+        for (int test = 0; test < 300; test++) {
+            Comparator<Integer> comparator = COMPARATORS.get(random.nextInt(COMPARATORS.size()));
+            NavigableSet<Integer> expected = treeSet(randomElements(random.nextInt(1000), 2000), comparator);
+            ArraySet<Integer> actual = new ArraySet<>(expected, comparator);
+            if (random.nextBoolean()) {
+                expected = expected.descendingSet();
+                actual = (ArraySet<Integer>) actual.descendingSet();
+            }
+            Integer[] probes = randomElements(random.nextInt(500), 2200).stream().map(i -> i - 100).toArray(Integer[]::new);
+            Arrays.sort(probes, expected.comparator());
+
+            boolean[] contains = new boolean[probes.length];
+            Integer[] floors = new Integer[probes.length];
+            Integer[] ceilings = new Integer[probes.length];
+            int[] ranks = new int[probes.length];
+            actual.containsAll(probes, contains);
+            actual.floorAll(probes, floors);
+            actual.ceilingAll(probes, ceilings);
+            actual.rankAll(probes, ranks);
+            for (int i = 0; i < probes.length; i++) {
+                assertEquals(expected.contains(probes[i]), contains[i]);
+                assertEquals(expected.floor(probes[i]), floors[i]);
+                assertEquals(expected.ceiling(probes[i]), ceilings[i]);
+                assertEquals(expected.headSet(probes[i], false).size(), ranks[i]);
+            }
+        }
+    }
+
+    @Test
+    public void unsortedProbes() {
+        ArraySet<Integer> set = new ArraySet<>(Arrays.asList(1, 2, 3));
+        try {
+            set.rankAll(new Integer[]{2, 1}, new int[2]);
+            fail("Unsorted probes");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            set.containsAll(new Integer[]{1, 2}, new boolean[1]);
+            fail("Short result array");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void concurrentArraySet() {
+        for (int test = 0; test < 100; test++) {
+            Comparator<Integer> comparator = COMPARATORS.get(random.nextInt(COMPARATORS.size()));
+            List<Integer> elements = randomElements(random.nextInt(100), 200);
+            NavigableSet<Integer> expected = treeSet(elements, comparator);
+            ConcurrentArraySet<Integer> actual = new ConcurrentArraySet<>(elements, comparator);
+            for (int operation = 0; operation < 200; operation++) {
+                int element = random.nextInt(220) - 10;
+                switch (random.nextInt(4)) {
+                    case 0:
+                        assertEquals(expected.add(element), actual.add(element));
+                        break;
+                    case 1:
+                        assertEquals(expected.remove(element), actual.remove(element));
+                        break;
+                    case 2:
+                        assertEquals(expected.pollFirst(), actual.pollFirst());
+                        break;
+                    default:
+                        assertEquals(expected.pollLast(), actual.pollLast());
+                }
+            }
+            checkSet(expected, actual);
+        }
+    }
+
+    @Test
+    public void concurrentBulkOperations() {
+        for (int test = 0; test < 100; test++) {
+            Comparator<Integer> comparator = COMPARATORS.get(random.nextInt(COMPARATORS.size()));
+            List<Integer> elements = randomElements(random.nextInt(100), 200);
+            NavigableSet<Integer> expected = treeSet(elements, comparator);
+            ConcurrentArraySet<Integer> actual = new ConcurrentArraySet<>(elements, comparator);
+            for (int operation = 0; operation < 20; operation++) {
+                List<Integer> other = randomElements(random.nextInt(30), 220);
+                int bound = random.nextInt(200);
+                switch (random.nextInt(5)) {
+                    case 0:
+                        assertEquals(expected.addAll(other), actual.addAll(other));
+                        break;
+                    case 1:
+                        // TreeSet.removeAll compares by comparator or by equals depending on sizes
+                        assertEquals(expected.removeIf(other::contains), actual.removeAll(other));
+                        break;
+                    case 2:
+                        other.addAll(randomElements(200, 200));
+                        assertEquals(expected.retainAll(other), actual.retainAll(other));
+                        break;
+                    case 3:
+                        assertEquals(expected.removeIf(element -> element > bound),
+                                actual.removeIf(element -> element > bound));
+                        break;
+                    default:
+                        for (Iterator<Integer> it = actual.iterator(); it.hasNext(); ) {
+                            if (it.next() % 7 == 0) {
+                                it.remove();
+                            }
+                        }
+                        expected.removeIf(element -> element % 7 == 0);
+                }
+                checkSet(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void concurrentSnapshots() throws InterruptedException {
+        ConcurrentArraySet<Integer> set = new ConcurrentArraySet<>();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                int element = i;
+                set.update(current -> {
+                    List<Integer> next = new ArrayList<>(current);
+                    next.add(element);
+                    next.add(-element);
+                    return next;
+                });
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            // every snapshot holds pairs added together
+            ArraySet<Integer> snapshot = set.snapshot();
+            int size = snapshot.size();
+            assertEquals(size == 0 ? 0 : 1, size % 2);
+            for (Integer element : snapshot.tailSet(1, true)) {
+                assertTrue(snapshot.contains(-element));
+            }
+            assertEquals(size, new ArrayList<>(snapshot).size());
+        }
+        writer.join();
+        assertEquals(3999, set.size());
+    }
+
+    static void checkSet(NavigableSet<Integer> expected, NavigableSet<Integer> actual) {
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        List<Integer> descending = new ArrayList<>();
+        actual.descendingIterator().forEachRemaining(descending::add);
+        assertEquals(new ArrayList<>(expected.descendingSet()), descending);
+        if (!expected.isEmpty()) {
+            assertEquals(expected.first(), actual.first());
+            assertEquals(expected.last(), actual.last());
+        } else {
+            try {
+                actual.first();
+                fail("first() of empty set");
+            } catch (NoSuchElementException ignored) {
+            }
+        }
+        for (int element = -20; element < 2020; element += 1 + (expected.size() > 500 ? 7 : 0)) {
+            assertEquals(expected.contains(element), actual.contains(element));
+            assertEquals(expected.floor(element), actual.floor(element));
+            assertEquals(expected.ceiling(element), actual.ceiling(element));
+            assertEquals(expected.lower(element), actual.lower(element));
+            assertEquals(expected.higher(element), actual.higher(element));
+        }
+    }
+
+    private List<Integer> randomElements(int size, int bound) {
+        List<Integer> elements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            elements.add(random.nextInt(bound));
+        }
+        return elements;
+    }
+
+    private static NavigableSet<Integer> treeSet(Collection<Integer> elements, Comparator<Integer> comparator) {
+        NavigableSet<Integer> set = new TreeSet<>(comparator);
+        set.addAll(elements);
+        return set;
+    }
+
+    private static void assertUnsupported(Runnable operation) {
+        try {
+            operation.run();
+            fail("Modification of immutable set");
+        } catch (UnsupportedOperationException ignored) {
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ru.ifmo.rain.bobrov.arrayset.test;
+
+import org.junit.*;
+import ru.ifmo.rain.bobrov.arrayset.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Randomized comparison of {@link FrontCodedStringSet} with {@link TreeSet} ordered by code points.
+ */
+public class FrontCodedStringSetTest {
+    // chars of one, two and three UTF-8 bytes, a char above surrogates and a surrogate pair
+    private static final String[] ALPHABET = {"a", "b", "z", "\u00e9", "\u0416", "\uffee", "\ud83d\ude00"};
+
+    private final Random random = new Random(9283749283749823L);
+
+    @Test
+    public void codePointOrder() {
+        for (int test = 0; test < 10000; test++) {
+            String first = randomString(random);
+            String second = randomString(random);
+            assertEquals(Integer.signum(compareCodePoints(first, second)),
+                    Integer.signum(FrontCodedStringSet.CODE_POINT_ORDER.compare(first, second)));
+        }
+    }
+
+    @Test
+    public void navigation() {
+        for (int test = 0; test < 100; test++) {
+            // small blocks make many blocks, so lookups also go through sampled first strings
+            int blockSize = 1 + random.nextInt(random.nextBoolean() ? 3 : 40);
+            List<String> strings = randomStrings(random, random.nextInt(2000));
+            checkSet(strings, FrontCodedStringSet.of(strings, blockSize));
+        }
+    }
+
+    @Test
+    public void invalidBlockSize() {
+        try {
+            FrontCodedStringSet.of(Collections.singletonList("a"), 0);
+            fail("Zero block size");
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    static void checkSet(List<String> strings, FrontCodedStringSet set) {
+        NavigableSet<String> expected = new TreeSet<>(FrontCodedStringSet.CODE_POINT_ORDER);
+        expected.addAll(strings);
+        List<String> sorted = new ArrayList<>(expected);
+
+        assertEquals(expected.size(), set.size());
+        assertEquals(expected.isEmpty(), set.isEmpty());
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(sorted.get(i), set.select(i));
+        }
+        try {
+            set.select(sorted.size());
+            fail("Select out of bounds");
+        } catch (IndexOutOfBoundsException ignored) {
+        }
+        List<String> probes = new ArrayList<>(strings);
+        for (String string : strings) {
+            probes.add(string + "a");
+            probes.add(string.isEmpty() ? string : string.substring(0, string.offsetByCodePoints(string.length(), -1)));
+        }
+        probes.add("");
+        probes.add("\uffff\uffff");
+        for (String probe : probes) {
+            assertEquals(expected.contains(probe), set.contains(probe));
+            assertEquals(expected.headSet(probe, false).size(), set.rank(probe));
+            assertEquals(expected.floor(probe), set.floor(probe));
+            assertEquals(expected.ceiling(probe), set.ceiling(probe));
+            assertEquals(expected.lower(probe), set.lower(probe));
+            assertEquals(expected.higher(probe), set.higher(probe));
+        }
+        NavigableSet<String> view = set.asNavigableSet();
+        assertEquals(sorted, new ArrayList<>(view));
+        assertEquals(new ArrayList<>(expected.descendingSet()), new ArrayList<>(view.descendingSet()));
+    }
+
+    private static int compareCodePoints(String first, String second) {
+        return Arrays.compare(first.codePoints().toArray(), second.codePoints().toArray());
+    }
+
+    static List<String> randomStrings(Random random, int size) {
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            // strings often share a prefix with a previous one, as front coding expects
+            strings.add(i > 0 && random.nextBoolean()
+                    ? strings.get(random.nextInt(i)) + randomString(random)
+                    : randomString(random));
+        }
+        return strings;
+    }
+
+    private static String randomString(Random random) {
+        StringBuilder builder = new StringBuilder();
+        for (int length = random.nextInt(6); length > 0; length--) {
+            builder.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        }
+        return builder.toString();
+    }
+}
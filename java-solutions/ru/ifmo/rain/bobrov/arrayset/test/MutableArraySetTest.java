@@ -0,0 +1,180 @@
+package ru.ifmo.rain.bobrov.arrayset.test;
+
+import org.junit.*;
+import ru.ifmo.rain.bobrov.arrayset.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Randomized comparison of {@link MutableArraySet} with {@link TreeSet}.
+ */
+public class MutableArraySetTest {
+    private final Random random = new Random(8234729384723984L);
+
+    @Test
+    public void operations() {
+        for (int test = 0; test < 100; test++) {
+            Comparator<Integer> comparator = random.nextBoolean() ? null : Comparator.reverseOrder();
+            List<Integer> elements = randomElements(random.nextInt(300), 500);
+            NavigableSet<Integer> expected = new TreeSet<>(comparator);
+            expected.addAll(elements);
+            MutableArraySet<Integer> actual = new MutableArraySet<>(elements, comparator);
+            for (int operation = 0; operation < 2000; operation++) {
+                int element = random.nextInt(520) - 10;
+                switch (random.nextInt(8)) {
+                    case 0:
+                    case 1:
+                    case 2:
+                        assertEquals(expected.add(element), actual.add(element));
+                        break;
+                    case 3:
+                    case 4:
+                        assertEquals(expected.remove(element), actual.remove(element));
+                        break;
+                    case 5:
+                        assertEquals(expected.pollFirst(), actual.pollFirst());
+                        break;
+                    case 6:
+                        assertEquals(expected.pollLast(), actual.pollLast());
+                        break;
+                    default:
+                        if (random.nextInt(100) == 0) {
+                            expected.clear();
+                            actual.clear();
+                        }
+                }
+                assertEquals(expected.size(), actual.size());
+                assertEquals(expected.contains(element), actual.contains(element));
+                assertEquals(expected.floor(element), actual.floor(element));
+                assertEquals(expected.ceiling(element), actual.ceiling(element));
+                assertEquals(expected.lower(element), actual.lower(element));
+                assertEquals(expected.higher(element), actual.higher(element));
+                if (operation % 200 == 0) {
+                    ArraySetTest.checkSet(expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void iteratorRemoval() {
+        for (int test = 0; test < 200; test++) {
+            List<Integer> elements = randomElements(random.nextInt(3000), 5000);
+            NavigableSet<Integer> expected = new TreeSet<>(elements);
+            MutableArraySet<Integer> actual = new MutableArraySet<>(elements);
+            int divisor = 1 + random.nextInt(5);
+            if (random.nextBoolean()) {
+                // removes most of the elements, merges happen during iteration
+                expected.removeIf(element -> element % divisor != 0);
+                actual.removeIf(element -> element % divisor != 0);
+            } else {
+                Iterator<Integer> expectedIterator = expected.descendingIterator();
+                Iterator<Integer> actualIterator = actual.descendingIterator();
+                while (expectedIterator.hasNext()) {
+                    Integer element = expectedIterator.next();
+                    assertEquals(element, actualIterator.next());
+                    if (element % divisor != 0) {
+                        expectedIterator.remove();
+                        actualIterator.remove();
+                    }
+                }
+                assertFalse(actualIterator.hasNext());
+            }
+            ArraySetTest.checkSet(expected, actual);
+            for (int i = 0; i < 50; i++) {
+                int element = random.nextInt(5000);
+                assertEquals(expected.add(element), actual.add(element));
+            }
+            ArraySetTest.checkSet(expected, actual);
+        }
+    }
+
+    @Test
+    public void concurrentModification() {
+        MutableArraySet<Integer> set = new MutableArraySet<>(Arrays.asList(1, 2, 3));
+        Iterator<Integer> iterator = set.iterator();
+        iterator.next();
+        set.add(4);
+        try {
+            iterator.next();
+            fail("Modification during iteration");
+        } catch (ConcurrentModificationException ignored) {
+        }
+    }
+
+    @Test
+    public void readsDuringIteration() {
+        for (int test = 0; test < 100; test++) {
+            List<Integer> elements = randomElements(random.nextInt(300), 500);
+            NavigableSet<Integer> expected = new TreeSet<>(elements);
+            MutableArraySet<Integer> actual = new MutableArraySet<>(elements);
+            Iterator<Integer> expectedIterator = expected.iterator();
+            Iterator<Integer> actualIterator = actual.iterator();
+            while (expectedIterator.hasNext()) {
+                Integer element = expectedIterator.next();
+                assertEquals(element, actualIterator.next());
+                int removal = random.nextInt(3);
+                if (removal == 0) {
+                    expectedIterator.remove();
+                    actualIterator.remove();
+                }
+                // views and other iterators merge pending removals, which is not a modification
+                switch (random.nextInt(3)) {
+                    case 0:
+                        assertEquals(new ArrayList<>(expected.headSet(element)), new ArrayList<>(actual.headSet(element)));
+                        break;
+                    case 1:
+                        actual.descendingIterator();
+                        break;
+                    default:
+                }
+                if (removal == 1) {
+                    expectedIterator.remove();
+                    actualIterator.remove();
+                    assertEquals(expected.size(), actual.size());
+                }
+            }
+            assertFalse(actualIterator.hasNext());
+            ArraySetTest.checkSet(expected, actual);
+        }
+    }
+
+    @Test
+    public void snapshots() {
+        for (int test = 0; test < 100; test++) {
+            List<Integer> elements = randomElements(random.nextInt(500), 1000);
+            NavigableSet<Integer> expected = new TreeSet<>(elements);
+            MutableArraySet<Integer> actual = new MutableArraySet<>(elements);
+            NavigableSet<Integer> expectedView = new TreeSet<>(expected.headSet(500, true));
+            NavigableSet<Integer> view = actual.headSet(500, true);
+            NavigableSet<Integer> expectedDescending = new TreeSet<>(expected).descendingSet();
+            NavigableSet<Integer> descending = actual.descendingSet();
+            for (int operation = 0; operation < 500; operation++) {
+                int element = random.nextInt(1000);
+                if (random.nextBoolean()) {
+                    actual.add(element);
+                } else {
+                    actual.remove(element);
+                }
+            }
+            // views are snapshots taken at the moment of the call
+            ArraySetTest.checkSet(expectedView, view);
+            ArraySetTest.checkSet(expectedDescending, descending);
+            try {
+                view.add(1);
+                fail("Modification of a snapshot");
+            } catch (UnsupportedOperationException ignored) {
+            }
+        }
+    }
+
+    private List<Integer> randomElements(int size, int bound) {
+        List<Integer> elements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            elements.add(random.nextInt(bound));
+        }
+        return elements;
+    }
+}
@@ -0,0 +1,217 @@
+package ru.ifmo.rain.bobrov.arrayset.test;
+
+import org.junit.*;
+import ru.ifmo.rain.bobrov.arrayset.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.IntToLongFunction;
+import java.util.function.ToLongFunction;
+
+import static org.junit.Assert.*;
+
+/**
+ * Randomized comparison of sets of primitive and fixed-width keys with {@link TreeSet}.
+ */
+public class PrimitiveArraySetTest {
+    private final Random random = new Random(2384723984729347L);
+
+    @Test
+    public void intArraySet() {
+        for (int test = 0; test < 200; test++) {
+            int[] values = random.ints(random.nextInt(300), -500, 500).toArray();
+            IntArraySet set = new IntArraySet(values, random.nextBoolean());
+            NavigableSet<Long> expected = new TreeSet<>();
+            Arrays.stream(values).forEach(value -> expected.add((long) value));
+
+            assertEquals(expected.size(), set.size());
+            assertArrayEquals(expected.stream().mapToInt(Long::intValue).toArray(), set.toArray());
+            for (int probe = -510; probe < 510; probe++) {
+                assertEquals(expected.contains((long) probe), set.contains(probe));
+                checkIndices(expected, probe, set::getInt,
+                        set.floorIndex(probe), set.ceilingIndex(probe), set.lowerIndex(probe), set.higherIndex(probe));
+                assertEquals(orDefault(expected.floor((long) probe), Integer.MIN_VALUE), set.floor(probe, Integer.MIN_VALUE));
+                assertEquals(orDefault(expected.higher((long) probe), Integer.MIN_VALUE), set.higher(probe, Integer.MIN_VALUE));
+            }
+            checkView(expected, set.asNavigableSet(), Integer::longValue);
+        }
+    }
+
+    @Test
+    public void longArraySet() {
+        for (int test = 0; test < 200; test++) {
+            long[] values = randomLongs(random.nextInt(300));
+            LongArraySet set = new LongArraySet(values, random.nextBoolean());
+            NavigableSet<Long> expected = treeSet(values);
+
+            assertEquals(expected.size(), set.size());
+            assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(), set.toArray());
+            for (long probe : probes(values)) {
+                assertEquals(expected.contains(probe), set.contains(probe));
+                checkIndices(expected, probe, set::getLong,
+                        set.floorIndex(probe), set.ceilingIndex(probe), set.lowerIndex(probe), set.higherIndex(probe));
+                assertEquals(orDefault(expected.ceiling(probe), 0), set.ceiling(probe, 0));
+                assertEquals(orDefault(expected.lower(probe), 0), set.lower(probe, 0));
+            }
+            checkView(expected, set.asNavigableSet(), Long::longValue);
+        }
+    }
+
+    @Test
+    public void searchIndex() {
+        // every shape of the last level of the index
+        for (int size = 0; size < 70; size++) {
+            long[] values = randomLongs(size);
+            NavigableSet<Long> expected = treeSet(values);
+            LongArraySet longs = new LongArraySet(values, true);
+            for (long probe : probes(values)) {
+                assertEquals(expected.contains(probe), longs.contains(probe));
+            }
+            int[] ints = random.ints(size).toArray();
+            IntArraySet set = new IntArraySet(ints, true);
+            for (int value : ints) {
+                assertTrue(set.contains(value));
+                assertEquals(Arrays.binarySearch(set.toArray(), value + 1) >= 0, set.contains(value + 1));
+            }
+            assertEquals(set.size() > 0 && set.getInt(0) == Integer.MIN_VALUE, set.contains(Integer.MIN_VALUE));
+            assertEquals(set.size() > 0 && set.getInt(set.size() - 1) == Integer.MAX_VALUE, set.contains(Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void offHeapLongSet() throws IOException {
+        for (int test = 0; test < 100; test++) {
+            long[] values = randomLongs(random.nextInt(300));
+            NavigableSet<Long> expected = treeSet(values);
+            OffHeapLongSet built = OffHeapLongSet.of(values);
+            Path file = tempFile();
+            ArraySetFormat.writeLongs(file, built);
+            for (OffHeapLongSet set : Arrays.asList(built, ArraySetFormat.mapLongs(file))) {
+                assertEquals(expected.size(), set.size());
+                for (long probe : probes(values)) {
+                    assertEquals(expected.contains(probe), set.contains(probe));
+                    checkIndices(expected, probe, set::getLong,
+                            set.floorIndex(probe), set.ceilingIndex(probe), set.lowerIndex(probe), set.higherIndex(probe));
+                }
+                checkView(expected, set.asNavigableSet(), Long::longValue);
+            }
+        }
+    }
+
+    @Test
+    public void offHeapBytesSet() throws IOException {
+        for (int test = 0; test < 100; test++) {
+            int width = 1 + random.nextInt(3);
+            List<byte[]> keys = randomKeys(random.nextInt(300), width);
+            NavigableSet<byte[]> expected = new TreeSet<>(Arrays::compareUnsigned);
+            expected.addAll(keys);
+            OffHeapBytesSet built = OffHeapBytesSet.of(width, keys);
+            Path file = tempFile();
+            ArraySetFormat.writeBytes(file, built);
+            for (OffHeapBytesSet set : Arrays.asList(built, ArraySetFormat.mapBytes(file))) {
+                assertEquals(expected.size(), set.size());
+                for (byte[] probe : randomKeys(200, width)) {
+                    assertEquals(expected.contains(probe), set.contains(probe));
+                    assertKey(expected.floor(probe), set, set.floorIndex(probe));
+                    assertKey(expected.ceiling(probe), set, set.ceilingIndex(probe));
+                    assertKey(expected.lower(probe), set, set.lowerIndex(probe));
+                    assertKey(expected.higher(probe), set, set.higherIndex(probe));
+                }
+                assertArrayEquals(expected.toArray(), set.asNavigableSet().toArray());
+                assertArrayEquals(expected.descendingSet().toArray(), set.asNavigableSet().descendingSet().toArray());
+            }
+        }
+    }
+
+    @Test
+    public void offHeapBytesSetRejectsKeysOfOtherWidth() {
+        try {
+            OffHeapBytesSet.of(2, Arrays.asList(new byte[2], new byte[3]));
+            fail("Key of another width");
+        } catch (IllegalArgumentException ignored) {
+        }
+        assertFalse(OffHeapBytesSet.of(2, Collections.singletonList(new byte[2])).contains(new byte[3]));
+    }
+
+    private static void checkIndices(NavigableSet<Long> expected, long probe, IntToLongFunction get,
+                                     int floor, int ceiling, int lower, int higher) {
+        assertEquals(expected.floor(probe), element(get, floor));
+        assertEquals(expected.ceiling(probe), element(get, ceiling));
+        assertEquals(expected.lower(probe), element(get, lower));
+        assertEquals(expected.higher(probe), element(get, higher));
+    }
+
+    private static <T> void checkView(NavigableSet<Long> expected, NavigableSet<T> view, ToLongFunction<T> value) {
+        List<Long> actual = new ArrayList<>();
+        view.forEach(element -> actual.add(value.applyAsLong(element)));
+        assertEquals(new ArrayList<>(expected), actual);
+        List<Long> descending = new ArrayList<>();
+        view.descendingSet().forEach(element -> descending.add(value.applyAsLong(element)));
+        assertEquals(new ArrayList<>(expected.descendingSet()), descending);
+    }
+
+    private static void assertKey(byte[] expected, OffHeapBytesSet set, int index) {
+        if (expected == null) {
+            assertEquals(-1, index);
+        } else {
+            assertArrayEquals(expected, set.getKey(index));
+        }
+    }
+
+    private static Long element(IntToLongFunction get, int index) {
+        return index == -1 ? null : get.applyAsLong(index);
+    }
+
+    private static long orDefault(Long value, long absent) {
+        return value == null ? absent : value;
+    }
+
+    private long[] randomLongs(int size) {
+        // small values collide and test duplicates, large ones test extremes of long
+        return random.longs(size).map(value -> random.nextBoolean() ? value % 100 : value).toArray();
+    }
+
+    private long[] probes(long[] values) {
+        long[] probes = new long[values.length * 3 + 4];
+        for (int i = 0; i < values.length; i++) {
+            probes[3 * i] = values[i];
+            probes[3 * i + 1] = values[i] - 1;
+            probes[3 * i + 2] = values[i] + 1;
+        }
+        probes[probes.length - 4] = Long.MIN_VALUE;
+        probes[probes.length - 3] = Long.MAX_VALUE;
+        probes[probes.length - 2] = random.nextLong();
+        probes[probes.length - 1] = 0;
+        return probes;
+    }
+
+    private List<byte[]> randomKeys(int size, int width) {
+        List<byte[]> keys = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            byte[] key = new byte[width];
+            for (int j = 0; j < width; j++) {
+                // few distinct bytes, including negative ones, make equal prefixes
+                key[j] = (byte) (random.nextInt(5) * 60 - 120);
+            }
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    /**
+     * Creates file removed on exit, mapped files can't be removed earlier on every platform.
+     */
+    static Path tempFile() throws IOException {
+        Path file = Files.createTempFile("set", ".bin");
+        file.toFile().deleteOnExit();
+        return file;
+    }
+
+    private static NavigableSet<Long> treeSet(long[] values) {
+        NavigableSet<Long> set = new TreeSet<>();
+        Arrays.stream(values).forEach(set::add);
+        return set;
+    }
+}
@@ -0,0 +1,81 @@
+package ru.ifmo.rain.bobrov.student;
+
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.util.*;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * {@link StudentDB} with hash indexes of one roster by first name, last name and group.
+ *
+ * Roster is sorted once at construction and distributed to buckets in that order, so every bucket
+ * is already sorted and queries about the roster take time proportional to the amount of matches.
+ * The sorted roster is kept as well, so other filters about it walk name order and need no sorting.
+ * Queries about other collections are answered by {@link StudentDB}.
+ */
+public class IndexedStudentDB extends StudentDB {
+    private final Collection<Student> roster;
+    private final List<Student> sorted;
+    private final Map<String, List<Student>> byFirstName;
+    private final Map<String, List<Student>> byLastName;
+    private final Map<String, List<Student>> byGroup;
+
+    /**
+     * @param roster collection that will be queried, must not be changed afterwards
+     */
+    public IndexedStudentDB(Collection<Student> roster) {
+        this.roster = roster;
+        sorted = super.sortStudentsByName(roster);
+        byFirstName = index(sorted, Student::getFirstName);
+        byLastName = index(sorted, Student::getLastName);
+        byGroup = index(sorted, Student::getGroup);
+    }
+
+    private static Map<String, List<Student>> index(List<Student> sorted, Function<Student, String> key) {
+        return sorted.stream().collect(Collectors.groupingBy(key, HashMap::new, Collectors.toList()));
+    }
+
+    private List<Student> find(Map<String, List<Student>> index, String key) {
+        return new ArrayList<>(index.getOrDefault(key, Collections.emptyList()));
+    }
+
+    /**
+     * Returns students of the roster matching the filter, sorted by name.
+     */
+    public List<Student> findStudents(Predicate<? super Student> filter) {
+        return sorted.stream().filter(filter).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Student> sortStudentsByName(Collection<Student> students) {
+        return students == roster ? new ArrayList<>(sorted) : super.sortStudentsByName(students);
+    }
+
+    @Override
+    public List<Student> findStudentsByFirstName(Collection<Student> students, String name) {
+        return students == roster ? find(byFirstName, name) : super.findStudentsByFirstName(students, name);
+    }
+
+    @Override
+    public List<Student> findStudentsByLastName(Collection<Student> students, String name) {
+        return students == roster ? find(byLastName, name) : super.findStudentsByLastName(students, name);
+    }
+
+    @Override
+    public List<Student> findStudentsByGroup(Collection<Student> students, String group) {
+        return students == roster ? find(byGroup, group) : super.findStudentsByGroup(students, group);
+    }
+
+    @Override
+    public Map<String, String> findStudentNamesByGroup(Collection<Student> students, String group) {
+        if (students != roster) {
+            return super.findStudentNamesByGroup(students, group);
+        }
+        return byGroup.getOrDefault(group, Collections.emptyList()).stream()
+                .collect(Collectors.toMap(Student::getLastName, Student::getFirstName,
+                        BinaryOperator.minBy(String::compareTo)));
+    }
+}
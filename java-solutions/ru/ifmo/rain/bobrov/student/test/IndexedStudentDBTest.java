@@ -0,0 +1,84 @@
+package ru.ifmo.rain.bobrov.student.test;
+
+import info.kgeorgiy.java.advanced.student.Student;
+import org.junit.*;
+import ru.ifmo.rain.bobrov.student.IndexedStudentDB;
+import ru.ifmo.rain.bobrov.student.StudentDB;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Randomized comparison of {@link IndexedStudentDB} with {@link StudentDB}.
+ */
+public class IndexedStudentDBTest {
+    // few names, so students often share names and are ordered by id
+    private static final String[] FIRST_NAMES = {"Ivan", "Petr", "Anna", "Maria"};
+    private static final String[] LAST_NAMES = {"Ivanov", "Petrov", "Smirnova"};
+    private static final String[] GROUPS = {"M3234", "M3235", "M3236"};
+
+    private final Random random = new Random(2384792837498234L);
+    private final StudentDB expected = new StudentDB();
+
+    @Test
+    public void queries() {
+        for (int test = 0; test < 100; test++) {
+            List<Student> roster = randomStudents(random.nextInt(200));
+            IndexedStudentDB db = new IndexedStudentDB(roster);
+            checkQueries(db, roster);
+            // other collections are not indexed and must not be answered from the roster
+            checkQueries(db, randomStudents(random.nextInt(50)));
+            checkQueries(db, new ArrayList<>(roster));
+        }
+    }
+
+    private void checkQueries(IndexedStudentDB db, List<Student> students) {
+        for (String name : FIRST_NAMES) {
+            assertEquals(expected.findStudentsByFirstName(students, name), db.findStudentsByFirstName(students, name));
+        }
+        assertEquals(expected.findStudentsByFirstName(students, "Nobody"), db.findStudentsByFirstName(students, "Nobody"));
+        for (String name : LAST_NAMES) {
+            assertEquals(expected.findStudentsByLastName(students, name), db.findStudentsByLastName(students, name));
+        }
+        for (String group : GROUPS) {
+            assertEquals(expected.findStudentsByGroup(students, group), db.findStudentsByGroup(students, group));
+            assertEquals(expected.findStudentNamesByGroup(students, group), db.findStudentNamesByGroup(students, group));
+        }
+        assertEquals(expected.findStudentsByGroup(students, "M0000"), db.findStudentsByGroup(students, "M0000"));
+        assertEquals(expected.sortStudentsByName(students), db.sortStudentsByName(students));
+    }
+
+    @Test
+    public void findStudents() {
+        for (int test = 0; test < 100; test++) {
+            List<Student> roster = randomStudents(random.nextInt(200));
+            IndexedStudentDB db = new IndexedStudentDB(roster);
+            int maxId = random.nextInt(1000);
+            List<Student> sorted = expected.sortStudentsByName(roster);
+            sorted.removeIf(student -> student.getId() >= maxId);
+            assertEquals(sorted, db.findStudents(student -> student.getId() < maxId));
+        }
+    }
+
+    @Test
+    public void resultsAreCopies() {
+        List<Student> roster = randomStudents(100);
+        IndexedStudentDB db = new IndexedStudentDB(roster);
+        db.sortStudentsByName(roster).clear();
+        db.findStudentsByGroup(roster, GROUPS[0]).clear();
+        assertEquals(expected.sortStudentsByName(roster), db.sortStudentsByName(roster));
+        assertEquals(expected.findStudentsByGroup(roster, GROUPS[0]), db.findStudentsByGroup(roster, GROUPS[0]));
+    }
+
+    private List<Student> randomStudents(int size) {
+        List<Student> students = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            students.add(new Student(random.nextInt(1000),
+                    FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
+                    LAST_NAMES[random.nextInt(LAST_NAMES.length)],
+                    GROUPS[random.nextInt(GROUPS.length)]));
+        }
+        return students;
+    }
+}
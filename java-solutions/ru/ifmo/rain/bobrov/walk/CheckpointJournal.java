@@ -0,0 +1,155 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Class stores the last checkpoint of a {@link Walk} run.
+ *
+ * Checkpoint is a pair of input offset and output length such that all lines of the input before
+ * the offset are hashed and their results fill exactly the output prefix of that length.
+ * Journal starts with a description of the run: input file, its size and options that affect the output,
+ * a checkpoint of another run is never used. The description is followed by a fixed-size checkpoint record
+ * that is overwritten in place. Journal without a checkpoint is removed on close.
+ */
+class CheckpointJournal implements Closeable {
+    private static final long MAGIC = 0x57414c4b4a524e32L;
+    private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int RECORD_SIZE = 2 * Long.BYTES;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    private long recordPosition;
+    private long[] checkpoint;
+
+    private CheckpointJournal(final Path file) throws IOException {
+        this.file = file;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Opens journal of the output file, journal is stored next to it.
+     *
+     * @param output output file of the run
+     * @param run description of the run
+     * @param resume whether checkpoint of the previous run should be read, otherwise journal is started anew
+     * @return opened journal
+     * @throws IOException if journal can't be opened or it was written by another run
+     */
+    static CheckpointJournal open(final Path output, final String run, final boolean resume) throws IOException {
+        final CheckpointJournal journal = new CheckpointJournal(output.resolveSibling(output.getFileName() + ".journal"));
+        try {
+            final byte[] description = run.getBytes(StandardCharsets.UTF_8);
+            if (!resume || !journal.load(description)) {
+                journal.start(description);
+            }
+            return journal;
+        } catch (IOException e) {
+            journal.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads stored description and checkpoint.
+     *
+     * @return whether journal holds a description, it must be the given one
+     */
+    private boolean load(final byte[] description) throws IOException {
+        final ByteBuffer header = readFully(0, HEADER_SIZE);
+        if (header == null || header.getLong(0) != MAGIC) {
+            return false;
+        }
+        final int length = header.getInt(Long.BYTES);
+        final ByteBuffer stored = length < 0 || length > channel.size() ? null : readFully(HEADER_SIZE, length);
+        if (stored == null) {
+            return false;
+        }
+        if (!Arrays.equals(stored.array(), description)) {
+            throw new IOException("Checkpoint journal " + file + " was written by a run with another input or options.");
+        }
+        recordPosition = HEADER_SIZE + length;
+        final ByteBuffer last = readFully(recordPosition, RECORD_SIZE);
+        if (last != null) {
+            checkpoint = new long[]{last.getLong(0), last.getLong(Long.BYTES)};
+        }
+        return true;
+    }
+
+    private void start(final byte[] description) throws IOException {
+        channel.truncate(0);
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + description.length);
+        header.putLong(MAGIC).putInt(description.length).put(description).flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        recordPosition = header.limit();
+        checkpoint = null;
+    }
+
+    private ByteBuffer readFully(final long position, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        int read;
+        do {
+            read = channel.read(buffer, position + buffer.position());
+        } while (read > 0 && buffer.hasRemaining());
+        return buffer.hasRemaining() ? null : buffer;
+    }
+
+    /**
+     * Returns checkpoint of the previous run.
+     *
+     * @return input offset and output length or {@code null} if there is no valid checkpoint
+     */
+    long[] getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Stores checkpoint. Output up to {@code outputLength} must already be forced to the storage.
+     *
+     * @param inputOffset offset of the first input line that is not hashed
+     * @param outputLength length of the output of hashed lines
+     * @throws IOException if writing fails
+     */
+    void write(final long inputOffset, final long outputLength) throws IOException {
+        record.clear();
+        record.putLong(inputOffset).putLong(outputLength).flip();
+        while (record.hasRemaining()) {
+            channel.write(record, recordPosition + record.position());
+        }
+        checkpoint = new long[]{inputOffset, outputLength};
+    }
+
+    /**
+     * Closes and removes the journal after a complete run.
+     *
+     * @throws IOException if journal can't be removed
+     */
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Closes the journal, removes it if no checkpoint was stored.
+     *
+     * @throws IOException if journal can't be closed or removed
+     */
+    @Override
+    public void close() throws IOException {
+        if (checkpoint == null) {
+            delete();
+        } else {
+            channel.close();
+        }
+    }
+}
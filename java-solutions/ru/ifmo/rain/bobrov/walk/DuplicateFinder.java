@@ -0,0 +1,338 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class finds groups of files with equal contents.
+ *
+ * Files are grouped by size first, then files larger than two samples are grouped by hash of their first
+ * and last {@link #SAMPLE_SIZE} bytes. Files that still collide are read once, chunk by chunk in lockstep:
+ * a group splits where chunks differ, and a file that differs from all others is not read further.
+ * Files of a resulting group have equal contents, their hash is computed from the same reads.
+ * Hard links and links to an added file are added once.
+ */
+class DuplicateFinder {
+    static final int SAMPLE_SIZE = 4096;
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int MAX_OPEN_FILES = 64;
+
+    /**
+     * Group of files with equal contents.
+     */
+    static class Group {
+        private final long size;
+        private final byte[] hash;
+        private final List<Path> files;
+
+        Group(final long size, final byte[] hash, final List<Path> files) {
+            this.size = size;
+            this.hash = hash;
+            this.files = files;
+        }
+
+        /**
+         * @return size of every file of the group.
+         */
+        long getSize() {
+            return size;
+        }
+
+        /**
+         * @return full hash of every file of the group.
+         */
+        byte[] getHash() {
+            return hash;
+        }
+
+        /**
+         * @return files of the group in order of addition.
+         */
+        List<Path> getFiles() {
+            return files;
+        }
+    }
+
+    private final ExecutorService pool;
+    private final HashAlgorithm algorithm;
+    private final LinkOption[] linkOptions;
+    private final ThreadLocal<HashAlgorithm.Hasher> hashers;
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(CHUNK_SIZE));
+    private final WalkStats stats;
+    private final Map<Long, List<Path>> bySize = new HashMap<>();
+    private final Set<Object> added = new HashSet<>();
+    private final AtomicLong unreadable = new AtomicLong();
+    private long totalBytes;
+
+    /**
+     * @param pool pool to read files on
+     * @param algorithm algorithm of sample hashes and hashes of groups
+     * @param followLinks whether symbolic links should be resolved, otherwise they are ignored
+     * @param stats statistics to count read bytes in
+     */
+    DuplicateFinder(final ExecutorService pool, final HashAlgorithm algorithm, final boolean followLinks,
+                    final WalkStats stats) {
+        this.pool = pool;
+        this.algorithm = algorithm;
+        this.stats = stats;
+        linkOptions = followLinks ? new LinkOption[0] : new LinkOption[]{LinkOption.NOFOLLOW_LINKS};
+        hashers = ThreadLocal.withInitial(algorithm::newHasher);
+    }
+
+    /**
+     * Adds regular file to candidates, other files and files that are already added under another name
+     * are ignored.
+     *
+     * @param file file to add
+     */
+    void add(final Path file) {
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class, linkOptions);
+        } catch (IOException e) {
+            unreadable.incrementAndGet();
+            return;
+        }
+        if (!attributes.isRegularFile()) {
+            return;
+        }
+        // hard links and followed links share the key of the file they point to
+        final Object key = attributes.fileKey() != null ? attributes.fileKey() : file.toAbsolutePath().normalize();
+        if (added.add(key)) {
+            bySize.computeIfAbsent(attributes.size(), size -> new ArrayList<>()).add(file);
+            totalBytes += attributes.size();
+        }
+    }
+
+    /**
+     * Finds groups of duplicate files among added ones.
+     *
+     * @return groups of at least two files, larger files first
+     * @throws InterruptedException if interrupted while waiting for files to be read
+     */
+    List<Group> find() throws InterruptedException {
+        final List<Long> sizes = new ArrayList<>();
+        for (final Map.Entry<Long, List<Path>> sameSize : bySize.entrySet()) {
+            if (sameSize.getValue().size() > 1) {
+                sizes.add(sameSize.getKey());
+            }
+        }
+        sizes.sort(Comparator.reverseOrder());
+        // samples of all sizes are submitted before any of them is awaited
+        final Map<Long, List<Future<byte[]>>> samples = new HashMap<>();
+        final Map<Long, List<Future<List<Group>>>> comparisons = new HashMap<>();
+        for (final long size : sizes) {
+            final List<Path> sameSize = bySize.get(size);
+            if (size <= 2 * SAMPLE_SIZE) {
+                // sample of a small file is the whole file, so files are compared right away
+                comparisons.put(size, List.of(pool.submit(() -> compare(size, sameSize))));
+            } else {
+                final List<Future<byte[]>> hashes = new ArrayList<>(sameSize.size());
+                for (final Path file : sameSize) {
+                    hashes.add(pool.submit(() -> sampleHash(file)));
+                }
+                samples.put(size, hashes);
+            }
+        }
+        for (final long size : sizes) {
+            if (samples.containsKey(size)) {
+                final List<Future<List<Group>>> sizeComparisons = new ArrayList<>();
+                for (final List<Path> sameSample : groupBySample(bySize.get(size), samples.get(size))) {
+                    if (sameSample.size() > 1) {
+                        sizeComparisons.add(pool.submit(() -> compare(size, sameSample)));
+                    }
+                }
+                comparisons.put(size, sizeComparisons);
+            }
+        }
+        final List<Group> groups = new ArrayList<>();
+        for (final long size : sizes) {
+            for (final Future<List<Group>> comparison : comparisons.get(size)) {
+                try {
+                    groups.addAll(comparison.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        return groups;
+    }
+
+    private Collection<List<Path>> groupBySample(final List<Path> files, final List<Future<byte[]>> hashes)
+            throws InterruptedException {
+        final Map<ByteBuffer, List<Path>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            try {
+                groups.computeIfAbsent(ByteBuffer.wrap(hashes.get(i).get()), hash -> new ArrayList<>()).add(files.get(i));
+            } catch (ExecutionException e) {
+                unreadable.incrementAndGet();
+            }
+        }
+        return groups.values();
+    }
+
+    /**
+     * Hashes first and last {@link #SAMPLE_SIZE} bytes of the file.
+     */
+    private byte[] sampleHash(final Path file) throws IOException {
+        final ByteBuffer buffer = buffers.get();
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            buffer.limit(SAMPLE_SIZE);
+            read(channel, buffer, 0);
+            buffer.limit(2 * SAMPLE_SIZE);
+            read(channel, buffer, size - SAMPLE_SIZE);
+        }
+        stats.bytesRead(buffer.position());
+        buffer.flip();
+        final HashAlgorithm.Hasher hasher = hashers.get();
+        hasher.reset();
+        hasher.update(buffer);
+        return hasher.digest();
+    }
+
+    /**
+     * Reads files of the given size in lockstep and splits them into groups of equal contents.
+     */
+    private List<Group> compare(final long size, final List<Path> files) {
+        final ByteBuffer buffer = buffers.get();
+        final boolean keepOpen = files.size() <= MAX_OPEN_FILES;
+        final List<Candidate> candidates = new ArrayList<>(files.size());
+        for (final Path file : files) {
+            candidates.add(new Candidate(file, algorithm.newHasher()));
+        }
+        final List<ByteBuffer> spareChunks = new ArrayList<>();
+        List<List<Candidate>> same = List.of(candidates);
+        try {
+            for (long position = 0; position < size && !same.isEmpty(); ) {
+                final int length = (int) Math.min(CHUNK_SIZE, size - position);
+                final List<List<Candidate>> next = new ArrayList<>();
+                for (final List<Candidate> sameBefore : same) {
+                    final Map<ByteBuffer, List<Candidate>> byChunk = new LinkedHashMap<>();
+                    for (final Candidate candidate : sameBefore) {
+                        buffer.clear().limit(length);
+                        try {
+                            candidate.read(buffer, position, keepOpen);
+                        } catch (IOException e) {
+                            unreadable.incrementAndGet();
+                            candidate.close();
+                            continue;
+                        }
+                        stats.bytesRead(length);
+                        buffer.flip();
+                        candidate.hasher.update(buffer.duplicate());
+                        List<Candidate> sameChunk = byChunk.get(buffer);
+                        if (sameChunk == null) {
+                            final ByteBuffer chunk = spareChunks.isEmpty()
+                                    ? ByteBuffer.allocate(CHUNK_SIZE) : spareChunks.remove(spareChunks.size() - 1);
+                            chunk.clear();
+                            chunk.put(buffer).flip();
+                            sameChunk = new ArrayList<>();
+                            byChunk.put(chunk, sameChunk);
+                        }
+                        sameChunk.add(candidate);
+                    }
+                    for (final List<Candidate> sameChunk : byChunk.values()) {
+                        if (sameChunk.size() > 1) {
+                            next.add(sameChunk);
+                        } else {
+                            sameChunk.get(0).close();
+                        }
+                    }
+                    spareChunks.addAll(byChunk.keySet());
+                }
+                same = next;
+                position += length;
+            }
+        } finally {
+            for (final Candidate candidate : candidates) {
+                candidate.close();
+            }
+        }
+        final List<Group> groups = new ArrayList<>(same.size());
+        for (final List<Candidate> equal : same) {
+            final List<Path> groupFiles = new ArrayList<>(equal.size());
+            for (final Candidate candidate : equal) {
+                groupFiles.add(candidate.file);
+            }
+            groups.add(new Group(size, equal.get(0).hasher.digest(), groupFiles));
+        }
+        return groups;
+    }
+
+    /**
+     * File being compared together with hash of its bytes read so far.
+     */
+    private static class Candidate {
+        private final Path file;
+        private final HashAlgorithm.Hasher hasher;
+        private FileChannel channel;
+
+        Candidate(final Path file, final HashAlgorithm.Hasher hasher) {
+            this.file = file;
+            this.hasher = hasher;
+        }
+
+        /**
+         * Reads bytes at the position, channel stays open between calls only if {@code keepOpen} is set.
+         */
+        void read(final ByteBuffer buffer, final long position, final boolean keepOpen) throws IOException {
+            if (channel == null) {
+                channel = FileChannel.open(file, StandardOpenOption.READ);
+            }
+            try {
+                DuplicateFinder.read(channel, buffer, position);
+            } finally {
+                if (!keepOpen) {
+                    close();
+                }
+            }
+        }
+
+        void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+                channel = null;
+            }
+        }
+    }
+
+    private static void read(final FileChannel channel, final ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read == -1) {
+                throw new IOException("File was truncated while reading.");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * @return total size of added files.
+     */
+    long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return amount of files that could not be read.
+     */
+    long getUnreadable() {
+        return unreadable.get();
+    }
+}
@@ -0,0 +1,81 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class computes hashes of files.
+ *
+ * Files up to {@link #SMALL_FILE} bytes are read with a single read to a reusable direct buffer,
+ * larger files are read to the same buffer with positional reads up to the size taken at opening.
+ * No file is mapped, so hashing many large files doesn't hold mappings until garbage collection.
+ * Both paths pass buffers to a {@link HashAlgorithm.Hasher}, so all algorithms share them.
+ * Instances are not thread safe, every thread should use its own hasher.
+ */
+class FileHasher {
+    static final int SMALL_FILE = 1 << 16;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(SMALL_FILE);
+    private final HashAlgorithm.Hasher hasher;
+    private final WalkStats stats;
+
+    FileHasher(final HashAlgorithm algorithm, final WalkStats stats) {
+        hasher = algorithm.newHasher();
+        this.stats = stats;
+    }
+
+    /**
+     * Computes hash of the given file.
+     *
+     * @param file file to hash
+     * @return digest of file contents
+     * @throws IOException if file can't be read
+     */
+    byte[] hash(final Path file) throws IOException {
+        hasher.reset();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size <= SMALL_FILE) {
+                hashSmall(channel);
+            } else {
+                hashLarge(channel, size);
+            }
+        }
+        return hasher.digest();
+    }
+
+    private void hashSmall(final FileChannel channel) throws IOException {
+        buffer.clear();
+        // size of special and growing files may differ from the size reported by the channel
+        while (channel.read(buffer) != -1) {
+            if (!buffer.hasRemaining()) {
+                stats.bytesRead(buffer.position());
+                buffer.flip();
+                hasher.update(buffer);
+                buffer.clear();
+            }
+        }
+        stats.bytesRead(buffer.position());
+        buffer.flip();
+        hasher.update(buffer);
+    }
+
+    private void hashLarge(final FileChannel channel, final long size) throws IOException {
+        for (long position = 0; position < size; ) {
+            buffer.clear();
+            buffer.limit((int) Math.min(SMALL_FILE, size - position));
+            final int read = channel.read(buffer, position);
+            if (read == -1) {
+                throw new EOFException("File was truncated while hashing.");
+            }
+            position += read;
+            stats.bytesRead(read);
+            buffer.flip();
+            hasher.update(buffer);
+        }
+    }
+}
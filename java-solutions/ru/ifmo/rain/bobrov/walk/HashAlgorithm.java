@@ -0,0 +1,209 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hash algorithms supported by {@link Walk}.
+ *
+ * Digests are written as hex of their big-endian bytes, so {@link #FNV1_32} output is the same
+ * as {@code %08x} of the 32-bit hash.
+ */
+enum HashAlgorithm {
+    FNV1_32("fnv1-32", Integer.BYTES) {
+        @Override
+        Hasher newHasher() {
+            return new Fnv1Hasher();
+        }
+    },
+    FNV1A_64("fnv1a-64", Long.BYTES) {
+        @Override
+        Hasher newHasher() {
+            return new Fnv1a64Hasher();
+        }
+    },
+    XXHASH64("xxhash64", Long.BYTES) {
+        @Override
+        Hasher newHasher() {
+            return new XxHash64Hasher();
+        }
+    },
+    SHA1("sha1", 20) {
+        @Override
+        Hasher newHasher() {
+            return new Sha1Hasher();
+        }
+    };
+
+    private final String name;
+    private final int digestLength;
+
+    HashAlgorithm(final String name, final int digestLength) {
+        this.name = name;
+        this.digestLength = digestLength;
+    }
+
+    /**
+     * @return name of the algorithm used on command line.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return length of digest in bytes.
+     */
+    int getDigestLength() {
+        return digestLength;
+    }
+
+    /**
+     * @return new hasher in the initial state.
+     */
+    abstract Hasher newHasher();
+
+    /**
+     * Finds algorithm by its command line name.
+     *
+     * @param name name of the algorithm
+     * @return found algorithm
+     * @throws IllegalArgumentException if there is no algorithm with such name
+     */
+    static HashAlgorithm forName(final String name) {
+        for (final HashAlgorithm algorithm : values()) {
+            if (algorithm.name.equals(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown hash algorithm " + name + ".");
+    }
+
+    /**
+     * Streaming hash function state. Instances are not thread safe.
+     */
+    interface Hasher {
+        /**
+         * Returns hasher to the initial state.
+         */
+        void reset();
+
+        /**
+         * Hashes remaining bytes of the buffer and moves its position to the limit.
+         *
+         * @param buffer bytes to hash
+         */
+        void update(ByteBuffer buffer);
+
+        /**
+         * @return digest of all bytes passed since the last reset.
+         */
+        byte[] digest();
+    }
+
+    private static class Fnv1Hasher implements Hasher {
+        private static final int PRIME_NUMBER = 0x01000193;
+        private static final int OFFSET_BASIS = 0x811c9dc5;
+
+        private int hash = OFFSET_BASIS;
+
+        @Override
+        public void reset() {
+            hash = OFFSET_BASIS;
+        }
+
+        @Override
+        public void update(final ByteBuffer buffer) {
+            int i = buffer.position();
+            final int limit = buffer.limit();
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+                final long word = buffer.getLong(i);
+                hash = (hash * PRIME_NUMBER) ^ (int) (word >>> 56);
+                hash = (hash * PRIME_NUMBER) ^ (int) (word >>> 48) & 0xFF;
+                hash = (hash * PRIME_NUMBER) ^ (int) (word >>> 40) & 0xFF;
+                hash = (hash * PRIME_NUMBER) ^ (int) (word >>> 32) & 0xFF;
+                hash = (hash * PRIME_NUMBER) ^ (int) (word >>> 24) & 0xFF;
+                hash = (hash * PRIME_NUMBER) ^ (int) (word >>> 16) & 0xFF;
+                hash = (hash * PRIME_NUMBER) ^ (int) (word >>> 8) & 0xFF;
+                hash = (hash * PRIME_NUMBER) ^ (int) word & 0xFF;
+            }
+            for (; i < limit; i++) {
+                hash = (hash * PRIME_NUMBER) ^ (buffer.get(i) & 0xFF);
+            }
+            buffer.position(limit);
+        }
+
+        @Override
+        public byte[] digest() {
+            return ByteBuffer.allocate(Integer.BYTES).putInt(hash).array();
+        }
+    }
+
+    private static class Fnv1a64Hasher implements Hasher {
+        private static final long PRIME_NUMBER = 0x00000100000001b3L;
+        private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+
+        private long hash = OFFSET_BASIS;
+
+        @Override
+        public void reset() {
+            hash = OFFSET_BASIS;
+        }
+
+        @Override
+        public void update(final ByteBuffer buffer) {
+            int i = buffer.position();
+            final int limit = buffer.limit();
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+                final long word = buffer.getLong(i);
+                hash = (hash ^ (word >>> 56)) * PRIME_NUMBER;
+                hash = (hash ^ (word >>> 48 & 0xFF)) * PRIME_NUMBER;
+                hash = (hash ^ (word >>> 40 & 0xFF)) * PRIME_NUMBER;
+                hash = (hash ^ (word >>> 32 & 0xFF)) * PRIME_NUMBER;
+                hash = (hash ^ (word >>> 24 & 0xFF)) * PRIME_NUMBER;
+                hash = (hash ^ (word >>> 16 & 0xFF)) * PRIME_NUMBER;
+                hash = (hash ^ (word >>> 8 & 0xFF)) * PRIME_NUMBER;
+                hash = (hash ^ (word & 0xFF)) * PRIME_NUMBER;
+            }
+            for (; i < limit; i++) {
+                hash = (hash ^ (buffer.get(i) & 0xFF)) * PRIME_NUMBER;
+            }
+            buffer.position(limit);
+        }
+
+        @Override
+        public byte[] digest() {
+            return ByteBuffer.allocate(Long.BYTES).putLong(hash).array();
+        }
+    }
+
+    private static class Sha1Hasher implements Hasher {
+        private final MessageDigest digest;
+
+        Sha1Hasher() {
+            try {
+                digest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-1 is not supported.", e);
+            }
+        }
+
+        @Override
+        public void reset() {
+            digest.reset();
+        }
+
+        @Override
+        public void update(final ByteBuffer buffer) {
+            digest.update(buffer);
+        }
+
+        @Override
+        public byte[] digest() {
+            return digest.digest();
+        }
+    }
+}
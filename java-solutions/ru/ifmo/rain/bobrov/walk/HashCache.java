@@ -0,0 +1,264 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class stores hashes of files between {@link Walk} runs.
+ *
+ * Hash is reused while path, size, last modified time and file key of the file remain the same.
+ * Cache file starts with a header naming the kind of hashes followed by records of changed entries that are appended at the end
+ * of every run, the last record of a path wins. When the file contains too many superseded records
+ * it is compacted, the compaction may also evict entries that were not used during the run.
+ * Methods {@link #get} and {@link #put} are thread safe.
+ */
+class HashCache implements Closeable {
+    private static final int MAGIC = 0x57414c4b;
+    private static final byte VERSION = 2;
+
+    private final Path file;
+    private final String hashName;
+    private final int digestLength;
+    private final boolean evictUnused;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long records;
+    private long validLength;
+
+    private static class Entry {
+        private final long size;
+        private final long modified;
+        private final String fileKey;
+        private final byte[] hash;
+        private volatile boolean used;
+        private final boolean stored;
+
+        Entry(final long size, final long modified, final String fileKey, final byte[] hash, final boolean stored) {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.hash = hash;
+            this.stored = stored;
+        }
+
+        Entry(final BasicFileAttributes attributes, final byte[] hash) {
+            this(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS), fileKey(attributes), hash, false);
+            used = true;
+        }
+
+        boolean matches(final BasicFileAttributes attributes) {
+            return size == attributes.size()
+                    && modified == attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+                    && fileKey.equals(fileKey(attributes));
+        }
+    }
+
+    private HashCache(final Path file, final String hashName, final int digestLength, final boolean evictUnused) {
+        this.file = file;
+        this.hashName = hashName;
+        this.digestLength = digestLength;
+        this.evictUnused = evictUnused;
+    }
+
+    /**
+     * Loads cache from the file. Missing or empty file is treated as an empty cache,
+     * truncated or corrupted tail is ignored and overwritten on close.
+     * File that is not a cache of the same kind of hashes is never overwritten, so it is rejected.
+     *
+     * @param file cache file
+     * @param hashName description of cached hashes, see {@link WalkOptions#getHashName()}
+     * @param digestLength length of cached digests in bytes
+     * @param evictUnused whether entries that are not used during this run should be dropped on close
+     * @return loaded cache
+     * @throws IOException if the file can't be read or is not a cache of these hashes
+     */
+    static HashCache open(final Path file, final String hashName, final int digestLength,
+                          final boolean evictUnused) throws IOException {
+        final HashCache cache = new HashCache(file, hashName, digestLength, evictUnused);
+        if (Files.exists(file) && Files.size(file) > 0) {
+            cache.load();
+        }
+        return cache;
+    }
+
+    private void load() throws IOException {
+        final long fileSize = Files.size(file);
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            readHeader(input);
+            validLength = headerSize();
+            try {
+                while (true) {
+                    final byte[] path = readBytes(input, fileSize - validLength);
+                    final long size = input.readLong();
+                    final long modified = input.readLong();
+                    final byte[] fileKey = readBytes(input, fileSize - validLength - path.length);
+                    final byte[] hash = new byte[digestLength];
+                    input.readFully(hash);
+                    entries.put(new String(path, StandardCharsets.UTF_8),
+                            new Entry(size, modified, new String(fileKey, StandardCharsets.UTF_8), hash, true));
+                    records++;
+                    validLength += 2 * Integer.BYTES + path.length + 2 * Long.BYTES + fileKey.length + hash.length;
+                }
+            } catch (EOFException ignored) {
+                // end of file or truncated record written by an interrupted run
+            }
+        }
+    }
+
+    private void readHeader(final DataInputStream input) throws IOException {
+        try {
+            if (input.readInt() != MAGIC) {
+                throw new IOException(file + " is not a hash cache file.");
+            }
+            final byte version = input.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of hash cache file " + file + ".");
+            }
+            final String name = input.readUTF();
+            if (!name.equals(hashName)) {
+                throw new IOException("Hash cache file " + file + " holds " + name + " hashes instead of "
+                        + hashName + ".");
+            }
+        } catch (EOFException | UTFDataFormatException e) {
+            throw new IOException(file + " is not a hash cache file.");
+        }
+    }
+
+    /**
+     * Finds hash of the file in the cache.
+     *
+     * @param path file
+     * @param attributes current attributes of the file
+     * @return cached hash or {@code null} if the file is unknown or was changed
+     */
+    byte[] get(final Path path, final BasicFileAttributes attributes) {
+        final Entry entry = entries.get(key(path));
+        if (entry == null || !entry.matches(attributes)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        entry.used = true;
+        hits.incrementAndGet();
+        return entry.hash;
+    }
+
+    /**
+     * Stores hash of the file.
+     *
+     * @param path file
+     * @param attributes attributes of the file read before hashing
+     * @param hash hash of the file
+     */
+    void put(final Path path, final BasicFileAttributes attributes, final byte[] hash) {
+        entries.put(key(path), new Entry(attributes, hash));
+    }
+
+    /**
+     * @return amount of files found in the cache.
+     */
+    long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return amount of files that were not found in the cache.
+     */
+    long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Writes new entries to the cache file, compacts it if needed.
+     *
+     * @throws IOException if the file can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (evictUnused) {
+            entries.values().removeIf(entry -> !entry.used);
+        }
+        if (evictUnused || validLength == 0 || records > 2 * entries.size()) {
+            compact();
+        } else {
+            append();
+        }
+    }
+
+    private void append() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(validLength);
+            channel.position(validLength);
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+                if (!entry.getValue().stored) {
+                    write(output, entry.getKey(), entry.getValue());
+                }
+            }
+            output.flush();
+        }
+    }
+
+    private void compact() throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeUTF(hashName);
+            for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+                write(output, entry.getKey(), entry.getValue());
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void write(final DataOutputStream output, final String path, final Entry entry) throws IOException {
+        writeBytes(output, path.getBytes(StandardCharsets.UTF_8));
+        output.writeLong(entry.size);
+        output.writeLong(entry.modified);
+        writeBytes(output, entry.fileKey.getBytes(StandardCharsets.UTF_8));
+        output.write(entry.hash);
+    }
+
+    private static void writeBytes(final DataOutputStream output, final byte[] bytes) throws IOException {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Reads length-prefixed bytes, length out of the remaining part of the file means a corrupted record.
+     */
+    private static byte[] readBytes(final DataInputStream input, final long remaining) throws IOException {
+        final int length = input.readInt();
+        if (length < 0 || length > remaining - Integer.BYTES) {
+            throw new EOFException();
+        }
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    private int headerSize() {
+        return Integer.BYTES + 1 + 2 + hashName.length();
+    }
+
+    private static String key(final Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    private static String fileKey(final BasicFileAttributes attributes) {
+        return Objects.toString(attributes.fileKey(), "");
+    }
+}
@@ -0,0 +1,155 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class writes {@code <hex digest>[suffix] <file name>} lines to a file in UTF-8.
+ *
+ * Lines are encoded directly to a reusable buffer which is written to the channel when it is full,
+ * so writing a line does not allocate. Output is the same as {@code String.format("%08x %s%n", ...)}
+ * for 32-bit digests. If journal is given, the last committed checkpoint is stored to it
+ * after every write of the buffer. Instances are not thread safe.
+ */
+class HashWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final byte[] suffix;
+    private final CheckpointJournal journal;
+    private long committedInput;
+    private long committedOutput;
+    private long journaledOutput;
+
+    /**
+     * Creates writer to the file, existing file is truncated to {@code length} bytes.
+     *
+     * @param file output file
+     * @param suffix ASCII string written after every digest
+     * @param journal journal to store checkpoints to or {@code null}
+     * @param length length of the output to keep
+     * @throws IOException if the file can't be opened
+     */
+    HashWriter(final Path file, final String suffix, final CheckpointJournal journal, final long length) throws IOException {
+        this.suffix = suffix.getBytes(StandardCharsets.US_ASCII);
+        this.journal = journal;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.truncate(length);
+        channel.position(length);
+        journaledOutput = length;
+    }
+
+    /**
+     * Writes line with the digest and the file name.
+     *
+     * @param hash digest of the file
+     * @param fileName name of the file
+     * @throws IOException if writing fails
+     */
+    void write(final byte[] hash, final String fileName) throws IOException {
+        ensure(2 * hash.length + suffix.length + 1);
+        for (final byte b : hash) {
+            buffer.put(HEX_DIGITS[(b >>> 4) & 0xF]);
+            buffer.put(HEX_DIGITS[b & 0xF]);
+        }
+        buffer.put(suffix);
+        buffer.put((byte) ' ');
+        putUtf8(fileName);
+        ensure(LINE_SEPARATOR.length);
+        buffer.put(LINE_SEPARATOR);
+    }
+
+    /**
+     * Writes empty line.
+     *
+     * @throws IOException if writing fails
+     */
+    void writeSeparator() throws IOException {
+        ensure(LINE_SEPARATOR.length);
+        buffer.put(LINE_SEPARATOR);
+    }
+
+    /**
+     * Marks that all lines of input before {@code inputOffset} are written.
+     *
+     * @param inputOffset offset of the first input line that is not written yet
+     * @throws IOException if writing fails
+     */
+    void commit(final long inputOffset) throws IOException {
+        committedInput = inputOffset;
+        committedOutput = channel.position() + buffer.position();
+    }
+
+    private void putUtf8(final String string) throws IOException {
+        final int length = string.length();
+        for (int i = 0; i < length; i++) {
+            ensure(4);
+            final char c = string.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >>> 6));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >>> 18));
+                buffer.put((byte) (0x80 | codePoint >>> 12 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint >>> 6 & 0x3F));
+                buffer.put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate is replaced the same way as by String.getBytes
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | c >>> 12));
+                buffer.put((byte) (0x80 | c >>> 6 & 0x3F));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    private void ensure(final int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes buffered lines to the file.
+     *
+     * @throws IOException if writing fails
+     */
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        if (journal != null && committedOutput > journaledOutput) {
+            channel.force(false);
+            journal.write(committedInput, committedOutput);
+            journaledOutput = committedOutput;
+        }
+    }
+
+    /**
+     * Flushes buffered lines and closes the file.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
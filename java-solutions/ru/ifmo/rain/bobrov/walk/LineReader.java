@@ -0,0 +1,107 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Class reads UTF-8 lines of a file and tracks byte offset of the next line.
+ *
+ * Lines are split the same way as by {@link java.io.BufferedReader#readLine()}.
+ * Instances are not thread safe.
+ */
+class LineReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int start;
+    private int end;
+    private boolean eof;
+    private long offset;
+
+    /**
+     * Opens the file and skips {@code offset} bytes.
+     *
+     * @param file file to read
+     * @param offset offset of the first line to read
+     * @throws IOException if the file can't be opened
+     */
+    LineReader(final Path file, final long offset) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(offset);
+        this.offset = offset;
+    }
+
+    /**
+     * Reads next line.
+     *
+     * @return line without terminator or {@code null} if end of file is reached
+     * @throws IOException if reading fails
+     */
+    String readLine() throws IOException {
+        int scan = start;
+        while (true) {
+            for (; scan < end; scan++) {
+                final byte b = buffer[scan];
+                if (b == '\n' || b == '\r') {
+                    if (b == '\r' && scan + 1 == end && !eof) {
+                        // "\r\n" may be split between reads
+                        break;
+                    }
+                    int next = scan + 1;
+                    if (b == '\r' && next < end && buffer[next] == '\n') {
+                        next++;
+                    }
+                    return take(scan, next);
+                }
+            }
+            if (eof) {
+                return start == end ? null : take(end, end);
+            }
+            scan -= start;
+            fill();
+            scan += start;
+        }
+    }
+
+    private String take(final int lineEnd, final int next) {
+        final String line = new String(buffer, start, lineEnd - start, StandardCharsets.UTF_8);
+        offset += next - start;
+        start = next;
+        return line;
+    }
+
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        } else if (end == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        final int read = channel.read(ByteBuffer.wrap(buffer, end, buffer.length - end));
+        if (read == -1) {
+            eof = true;
+        } else {
+            end += read;
+        }
+    }
+
+    /**
+     * @return byte offset of the line that will be returned by the next {@link #readLine()}.
+     */
+    long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,285 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+/**
+ * Class hashes all files of directory trees on a {@link ForkJoinPool}.
+ *
+ * Every directory is listed by its own task, files are hashed by forked subtasks, so listing
+ * and hashing of different parts of the tree run at the same time. Results are written as soon as
+ * files are hashed. In sorted mode entries of every directory are visited in name order and a result
+ * waits only for the entries before it: a task gets the turn when all preceding entries are written,
+ * writes its results and passes the turn to the next entry. Links to directories are skipped unless
+ * they are followed.
+ */
+class RecursiveWalk {
+    /**
+     * Receiver of hashed files.
+     */
+    interface Sink {
+        void accept(byte[] hash, String fileName) throws IOException;
+    }
+
+    private final ForkJoinPool pool;
+    private final Function<String, byte[]> hasher;
+    private final byte[] failedHash;
+    private final WalkStats stats;
+    private final boolean followLinks;
+    private final boolean sorted;
+    private final LinkOption[] linkOptions;
+
+    /**
+     * @param pool pool to run tasks on
+     * @param hasher function that hashes file with the given name
+     * @param failedHash hash written for files and directories that can't be read
+     * @param stats statistics to count unreadable directories in
+     * @param followLinks whether symbolic links to directories should be followed
+     * @param sorted whether results should be written in deterministic order
+     */
+    RecursiveWalk(final ForkJoinPool pool, final Function<String, byte[]> hasher, final byte[] failedHash,
+                  final WalkStats stats, final boolean followLinks, final boolean sorted) {
+        this.pool = pool;
+        this.hasher = hasher;
+        this.failedHash = failedHash;
+        this.stats = stats;
+        this.followLinks = followLinks;
+        this.sorted = sorted;
+        linkOptions = followLinks ? new LinkOption[0] : new LinkOption[]{LinkOption.NOFOLLOW_LINKS};
+    }
+
+    /**
+     * Hashes the file or all files of the directory. Empty name is a failed entry, it is not
+     * resolved to the working directory.
+     *
+     * @param fileName name of a file or a directory
+     * @param sink receiver of results, calls are serialized
+     * @throws IOException if sink throws {@link IOException}
+     */
+    void walk(final String fileName, final Sink sink) throws IOException {
+        final Path root = toPath(fileName);
+        if (root == null) {
+            stats.entryFailed();
+            sink.accept(failedHash, fileName);
+            return;
+        }
+        final WalkTask task = Files.isDirectory(root, linkOptions)
+                ? new DirectoryTask(null, root, fileName, sink, Set.of())
+                : new FileTask(null, fileName, sink);
+        try {
+            if (sorted) {
+                synchronized (sink) {
+                    task.activate();
+                }
+            }
+            pool.invoke(task);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Path toPath(final String fileName) {
+        if (fileName.isEmpty()) {
+            return null;
+        }
+        try {
+            return Paths.get(fileName);
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    private abstract class WalkTask extends RecursiveAction {
+        final DirectoryTask parent;
+        final String fileName;
+        final Sink sink;
+        // guarded by sink, used in sorted mode only
+        boolean active;
+        byte[] hash;
+
+        WalkTask(final DirectoryTask parent, final String fileName, final Sink sink) {
+            this.parent = parent;
+            this.fileName = fileName;
+            this.sink = sink;
+        }
+
+        /**
+         * Writes the only result of the task, in sorted mode as soon as the task has the turn.
+         */
+        void finish(final byte[] result) {
+            try {
+                synchronized (sink) {
+                    if (!sorted) {
+                        sink.accept(result, fileName);
+                    } else {
+                        hash = result;
+                        if (active) {
+                            sink.accept(hash, fileName);
+                            completed();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Gives the turn to the task, called with sink lock held when all preceding entries are written.
+         *
+         * @return whether all results of the task are written too
+         */
+        boolean activate() throws IOException {
+            active = true;
+            if (hash != null) {
+                sink.accept(hash, fileName);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Passes the turn on after the task wrote its last result while having the turn.
+         */
+        void completed() throws IOException {
+            if (parent != null) {
+                parent.childCompleted();
+            }
+        }
+    }
+
+    private class FileTask extends WalkTask {
+        FileTask(final DirectoryTask parent, final String fileName, final Sink sink) {
+            super(parent, fileName, sink);
+        }
+
+        @Override
+        protected void compute() {
+            finish(hasher.apply(fileName));
+        }
+    }
+
+    private class DirectoryTask extends WalkTask {
+        private final Path directory;
+        private final Set<Object> ancestors;
+        // guarded by sink, used in sorted mode only
+        private List<WalkTask> tasks;
+        private int next;
+
+        DirectoryTask(final DirectoryTask parent, final Path directory, final String fileName, final Sink sink,
+                      final Set<Object> ancestors) {
+            super(parent, fileName, sink);
+            this.directory = directory;
+            this.ancestors = ancestors;
+        }
+
+        @Override
+        protected void compute() {
+            final Set<Object> path;
+            final List<Path> children = new ArrayList<>();
+            try {
+                path = enter();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                    stream.forEach(children::add);
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                stats.entryFailed();
+                finish(failedHash);
+                return;
+            }
+            if (sorted) {
+                Collections.sort(children);
+            }
+            final List<WalkTask> tasks = new ArrayList<>(children.size());
+            for (final Path child : children) {
+                final BasicFileAttributes attributes = readAttributes(child);
+                final WalkTask task;
+                if (attributes != null && attributes.isDirectory()) {
+                    task = new DirectoryTask(this, child, child.toString(), sink, path);
+                } else if (attributes != null && attributes.isSymbolicLink() && Files.isDirectory(child)) {
+                    // link to a directory that is not followed is neither walked nor hashed
+                    continue;
+                } else {
+                    task = new FileTask(this, child.toString(), sink);
+                }
+                task.fork();
+                tasks.add(task);
+            }
+            if (sorted) {
+                try {
+                    synchronized (sink) {
+                        this.tasks = tasks;
+                        if (active && advance()) {
+                            completed();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            for (final WalkTask task : tasks) {
+                task.join();
+            }
+        }
+
+        @Override
+        boolean activate() throws IOException {
+            return super.activate() || tasks != null && advance();
+        }
+
+        /**
+         * Gives the turn to children in order while they write all their results at once.
+         *
+         * @return whether all results of the directory are written
+         */
+        private boolean advance() throws IOException {
+            while (next < tasks.size()) {
+                if (!tasks.get(next).activate()) {
+                    return false;
+                }
+                next++;
+            }
+            return true;
+        }
+
+        void childCompleted() throws IOException {
+            next++;
+            if (advance()) {
+                completed();
+            }
+        }
+
+        private BasicFileAttributes readAttributes(final Path child) {
+            try {
+                return Files.readAttributes(child, BasicFileAttributes.class, linkOptions);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Returns file keys of directories on the path to this one, throws if the directory is already on it.
+         */
+        private Set<Object> enter() throws IOException {
+            if (!followLinks) {
+                return ancestors;
+            }
+            final Object key = Files.readAttributes(directory, BasicFileAttributes.class).fileKey();
+            if (key == null) {
+                return ancestors;
+            }
+            if (ancestors.contains(key)) {
+                throw new FileSystemLoopException(directory.toString());
+            }
+            final Set<Object> path = new HashSet<>(ancestors);
+            path.add(key);
+            return path;
+        }
+    }
+}
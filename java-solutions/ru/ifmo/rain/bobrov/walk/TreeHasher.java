@@ -0,0 +1,123 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class computes tree hashes of files.
+ *
+ * File is split to chunks of fixed size that are hashed in parallel with positional reads,
+ * root hash is the hash of concatenated chunk digests. Empty file consists of one empty chunk.
+ * The root hash depends on the chunk size, so it is written next to the digest.
+ * Methods may be called from several threads.
+ */
+class TreeHasher {
+    private static final int READ_SIZE = 1 << 16;
+
+    private final ForkJoinPool pool;
+    private final HashAlgorithm algorithm;
+    private final long chunkSize;
+    private final WalkStats stats;
+    private final ThreadLocal<HashAlgorithm.Hasher> hashers;
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_SIZE));
+
+    /**
+     * @param pool pool to hash chunks on
+     * @param algorithm algorithm of chunk and root hashes
+     * @param chunkSize size of chunk in bytes
+     * @param stats statistics to count read bytes in
+     */
+    TreeHasher(final ForkJoinPool pool, final HashAlgorithm algorithm, final long chunkSize, final WalkStats stats) {
+        this.pool = pool;
+        this.algorithm = algorithm;
+        this.chunkSize = chunkSize;
+        this.stats = stats;
+        hashers = ThreadLocal.withInitial(algorithm::newHasher);
+    }
+
+    /**
+     * Computes tree hash of the given file.
+     *
+     * @param file file to hash
+     * @return root digest
+     * @throws IOException if file can't be read
+     */
+    byte[] hash(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final long chunks = Math.max(1, (size + chunkSize - 1) / chunkSize);
+            if (chunks > Integer.MAX_VALUE / algorithm.getDigestLength()) {
+                throw new IOException("Too many chunks in " + file + ".");
+            }
+            final byte[][] digests = new byte[(int) chunks][];
+            try {
+                pool.invoke(new ChunkTask(channel, size, digests, 0, digests.length));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            final HashAlgorithm.Hasher hasher = hashers.get();
+            hasher.reset();
+            for (final byte[] digest : digests) {
+                hasher.update(ByteBuffer.wrap(digest));
+            }
+            return hasher.digest();
+        }
+    }
+
+    private byte[] hashChunk(final FileChannel channel, final long from, final long to) throws IOException {
+        final HashAlgorithm.Hasher hasher = hashers.get();
+        final ByteBuffer buffer = buffers.get();
+        hasher.reset();
+        for (long position = from; position < to; ) {
+            buffer.clear();
+            buffer.limit((int) Math.min(READ_SIZE, to - position));
+            final int read = channel.read(buffer, position);
+            if (read == -1) {
+                throw new EOFException("File was truncated while hashing.");
+            }
+            position += read;
+            stats.bytesRead(read);
+            buffer.flip();
+            hasher.update(buffer);
+        }
+        return hasher.digest();
+    }
+
+    private class ChunkTask extends RecursiveAction {
+        private final FileChannel channel;
+        private final long size;
+        private final byte[][] digests;
+        private final int from;
+        private final int to;
+
+        ChunkTask(final FileChannel channel, final long size, final byte[][] digests, final int from, final int to) {
+            this.channel = channel;
+            this.size = size;
+            this.digests = digests;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new ChunkTask(channel, size, digests, from, middle),
+                        new ChunkTask(channel, size, digests, middle, to));
+                return;
+            }
+            try {
+                digests[from] = hashChunk(channel, from * chunkSize, Math.min(size, (from + 1) * chunkSize));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
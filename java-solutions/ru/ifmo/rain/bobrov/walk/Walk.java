@@ -1,25 +1,51 @@
 package ru.ifmo.rain.bobrov.walk;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 public class Walk {
-    private static final int PRIME_NUMBER = 0x01000193;
+    private final HashCache cache;
+    private final ThreadLocal<FileHasher> hashers;
+    private final TreeHasher treeHasher;
+    private final byte[] failedHash;
+    private final WalkStats stats;
+
+    private Walk(final HashCache cache, final HashAlgorithm algorithm, final TreeHasher treeHasher, final WalkStats stats) {
+        this.cache = cache;
+        this.treeHasher = treeHasher;
+        this.stats = stats;
+        hashers = ThreadLocal.withInitial(() -> new FileHasher(algorithm, stats));
+        failedHash = new byte[algorithm.getDigestLength()];
+    }
 
     public static void main(String[] args) {
-        if (args == null || args.length != 2 || args[0] == null || args[1] == null) {
-            System.err.println("Wrong arguments.");
+        final WalkOptions options;
+        try {
+            options = WalkOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Wrong arguments. " + e.getMessage());
             return;
         }
         Path pathIn;
         Path pathOut;
         try {
-            pathIn = Paths.get(args[0]);
-            pathOut = Paths.get(args[1]);
+            pathIn = Paths.get(options.getInputFile());
+            pathOut = Paths.get(options.getOutputFile());
         } catch (InvalidPathException e) {
             System.err.println("Input or output path is incorrect.");
             return;
@@ -32,38 +58,264 @@ public class Walk {
                 return;
             }
         }
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(pathIn.toFile()), StandardCharsets.UTF_8))) {
-            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(pathOut.toFile()), StandardCharsets.UTF_8))) {
-                String fileName;
-                while ((fileName = reader.readLine()) != null) {
-                    writer.write(String.format("%08x %s%n", FNV(fileName), fileName));
+        final HashCache cache;
+        try {
+            cache = options.getCacheFile() == null ? null
+                    : HashCache.open(Paths.get(options.getCacheFile()), options.getHashName(),
+                    options.getAlgorithm().getDigestLength(), options.isCacheEvict());
+        } catch (InvalidPathException | IOException e) {
+            System.err.println("Impossible to read cache file. " + e.getMessage());
+            return;
+        }
+        final WalkStats stats = new WalkStats();
+        if (options.getProgress() > 0) {
+            stats.startProgress(options.getProgress());
+        }
+        final ForkJoinPool chunkPool = options.getTreeChunk() > 0 ? new ForkJoinPool(options.getChunkThreads()) : null;
+        try {
+            final TreeHasher treeHasher = chunkPool == null ? null
+                    : new TreeHasher(chunkPool, options.getAlgorithm(), options.getTreeChunk(), stats);
+            new Walk(cache, options.getAlgorithm(), treeHasher, stats).run(pathIn, pathOut, options);
+        } finally {
+            stats.stopProgress();
+            if (chunkPool != null) {
+                chunkPool.shutdownNow();
+            }
+        }
+        if (cache != null) {
+            try {
+                cache.close();
+            } catch (IOException e) {
+                System.err.println("Impossible to write cache file.");
+            }
+            System.err.println("Cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses.");
+        }
+        if (options.getProgress() > 0) {
+            System.err.println(stats.summary());
+        } else if (stats.getFailed() > 0) {
+            System.err.println("Files that could not be hashed: " + stats.getFailed() + ".");
+        }
+        if (options.getStatsFile() != null) {
+            try {
+                stats.writeSummary(Paths.get(options.getStatsFile()), cache);
+            } catch (InvalidPathException | IOException e) {
+                System.err.println("Impossible to write statistics file.");
+            }
+        }
+    }
+
+    private void run(final Path pathIn, final Path pathOut, final WalkOptions options) {
+        final CheckpointJournal journal;
+        if (options.isCheckpoint()) {
+            final String run;
+            try {
+                run = pathIn.toAbsolutePath().normalize() + "\n" + Files.size(pathIn) + "\n" + options.getOutputOptions();
+            } catch (IOException e) {
+                System.err.println("Input file not found.");
+                return;
+            }
+            try {
+                journal = CheckpointJournal.open(pathOut, run, options.isResume());
+            } catch (IOException e) {
+                System.err.println("Impossible to open checkpoint journal. " + e.getMessage());
+                return;
+            }
+        } else {
+            journal = null;
+        }
+        final long[] checkpoint = journal == null ? null : journal.getCheckpoint();
+        if (options.isResume() && checkpoint == null) {
+            System.err.println("No checkpoint found, starting from the beginning.");
+        }
+        try (LineReader reader = new LineReader(pathIn, checkpoint == null ? 0 : checkpoint[0])) {
+            try {
+                try (HashWriter writer = new HashWriter(pathOut, options.getTreeChunk() > 0 ? "@" + options.getTreeChunk() : "",
+                        journal, checkpoint == null ? 0 : checkpoint[1])) {
+                    hash(reader, writer, options);
+                }
+                if (journal != null) {
+                    journal.delete();
                 }
-            } catch (FileNotFoundException e) {
+            } catch (NoSuchFileException e) {
                 System.err.println("Output file not found.");
             } catch (IOException e) {
                 System.err.println("Error while writing files.");
             }
-        } catch (FileNotFoundException e) {
+        } catch (NoSuchFileException e) {
             System.err.println("Input file not found.");
         } catch (IOException e) {
             System.err.println("Error while reading  files.");
+        } finally {
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void hash(final LineReader reader, final HashWriter writer, final WalkOptions options) throws IOException {
+        if (options.isDupes()) {
+            findDuplicates(reader, writer, options);
+        } else if (options.isRecursive()) {
+            hashRecursive(reader, writer, options);
+        } else if (options.getThreads() > 1) {
+            hashParallel(reader, writer, options.getThreads(), options.getWindow());
+        } else {
+            String fileName;
+            while ((fileName = reader.readLine()) != null) {
+                writer.write(hash(fileName), fileName);
+                writer.commit(reader.getOffset());
+            }
+        }
+    }
+
+    /**
+     * Writes groups of files with equal contents, larger files first, every group is followed by an empty line.
+     * Directories are expanded in recursive mode.
+     */
+    private void findDuplicates(final LineReader reader, final HashWriter writer,
+                                final WalkOptions options) throws IOException {
+        final ExecutorService pool = Executors.newFixedThreadPool(options.getThreads());
+        try {
+            final DuplicateFinder finder = new DuplicateFinder(pool, options.getAlgorithm(), options.isFollowLinks(), stats);
+            final FileVisitOption[] visitOptions = options.isFollowLinks()
+                    ? new FileVisitOption[]{FileVisitOption.FOLLOW_LINKS} : new FileVisitOption[0];
+            String fileName;
+            while ((fileName = reader.readLine()) != null) {
+                if (fileName.isEmpty()) {
+                    System.err.println("Impossible to walk an empty file name.");
+                    continue;
+                }
+                try {
+                    final Path file = Paths.get(fileName);
+                    if (options.isRecursive() && Files.isDirectory(file)) {
+                        try (Stream<Path> files = Files.walk(file, visitOptions)) {
+                            files.forEach(finder::add);
+                        }
+                    } else {
+                        finder.add(file);
+                    }
+                } catch (InvalidPathException | IOException | UncheckedIOException e) {
+                    System.err.println("Impossible to walk " + fileName + ".");
+                }
+            }
+            final List<DuplicateFinder.Group> groups = finder.find();
+            long duplicates = 0;
+            for (final DuplicateFinder.Group group : groups) {
+                for (final Path file : group.getFiles()) {
+                    writer.write(group.getHash(), file.toString());
+                }
+                writer.writeSeparator();
+                duplicates += group.getFiles().size();
+            }
+            System.err.println("Duplicates: " + groups.size() + " groups, " + duplicates + " files, "
+                    + stats.getBytesRead() + " of " + finder.getTotalBytes() + " bytes read, "
+                    + finder.getUnreadable() + " unreadable.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Hashing was interrupted.");
+        } finally {
+            pool.shutdownNow();
         }
     }
 
-    private static int FNV(String fileName) {
-        int hash = 0x811c9dc5;
-        try (BufferedInputStream inputStream = new BufferedInputStream(Files.newInputStream(Paths.get(fileName)))) {
-            byte[] buff = new byte[1024];
-            int length;
-            while ((length = inputStream.read(buff)) != -1) {
-                for (int i = 0; i < length; ++i) {
-                    hash *= PRIME_NUMBER;
-                    hash ^= (buff[i] & 0xFF);
+    private void hashRecursive(final LineReader reader, final HashWriter writer,
+                               final WalkOptions options) throws IOException {
+        final ForkJoinPool pool = new ForkJoinPool(options.getThreads());
+        try {
+            final RecursiveWalk walk = new RecursiveWalk(pool, this::hash, failedHash, stats,
+                    options.isFollowLinks(), options.isSorted());
+            String fileName;
+            while ((fileName = reader.readLine()) != null) {
+                walk.walk(fileName, writer::write);
+                writer.commit(reader.getOffset());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Hashes files on a pool of {@code threads} workers. At most {@code window} files are hashed
+     * or wait to be written at the same time, results are written in input order.
+     */
+    private void hashParallel(final LineReader reader, final HashWriter writer,
+                              final int threads, final int window) throws IOException {
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final Queue<Pending> inFlight = new ArrayDeque<>(window);
+        try {
+            String fileName;
+            while ((fileName = reader.readLine()) != null) {
+                if (inFlight.size() == window) {
+                    writeFirst(writer, inFlight);
                 }
+                final String name = fileName;
+                inFlight.add(new Pending(name, reader.getOffset(), pool.submit(() -> hash(name))));
+            }
+            while (!inFlight.isEmpty()) {
+                writeFirst(writer, inFlight);
             }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void writeFirst(final HashWriter writer, final Queue<Pending> inFlight) throws IOException {
+        final Pending first = inFlight.remove();
+        byte[] hash;
+        try {
+            hash = first.hash.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Hashing was interrupted.");
+        } catch (ExecutionException e) {
+            hash = failedHash;
+        }
+        writer.write(hash, first.fileName);
+        writer.commit(first.nextOffset);
+    }
+
+    private static class Pending {
+        private final String fileName;
+        private final long nextOffset;
+        private final Future<byte[]> hash;
+
+        Pending(final String fileName, final long nextOffset, final Future<byte[]> hash) {
+            this.fileName = fileName;
+            this.nextOffset = nextOffset;
+            this.hash = hash;
+        }
+    }
+
+    private byte[] hash(String fileName) {
+        final long start = System.nanoTime();
+        try {
+            final byte[] hash = hashFile(Paths.get(fileName));
+            stats.fileHashed(System.nanoTime() - start, true);
+            return hash;
         } catch (Exception e) {
-            return 0;
+            stats.fileHashed(System.nanoTime() - start, false);
+            return failedHash;
         }
+    }
+
+    private byte[] hashFile(final Path file) throws IOException {
+        if (cache == null) {
+            return compute(file);
+        }
+        final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        final byte[] cached = cache.get(file, attributes);
+        if (cached != null) {
+            return cached;
+        }
+        final byte[] hash = compute(file);
+        cache.put(file, attributes, hash);
         return hash;
     }
+
+    private byte[] compute(final Path file) throws IOException {
+        return treeHasher == null ? hashers.get().hash(file) : treeHasher.hash(file);
+    }
 }
@@ -0,0 +1,287 @@
+package ru.ifmo.rain.bobrov.walk;
+
+/**
+ * Class is used to parse and store {@link Walk} command line arguments.
+ *
+ * Usage: {@code Walk [--threads n] [--window n] [--hash algorithm] [--tree-chunk bytes] [--cache file [--cache-evict]]
+ * [--recursive [--follow-links] [--sorted]] [--dupes] [--checkpoint] [--resume] [--progress seconds] [--stats file]
+ * <input file> <output file>}
+ */
+class WalkOptions {
+    private String inputFile;
+    private String outputFile;
+    private int threads = 0;
+    private int window = 0;
+    private HashAlgorithm algorithm = HashAlgorithm.FNV1_32;
+    private long treeChunk;
+    private String cacheFile;
+    private boolean cacheEvict;
+    private boolean recursive;
+    private boolean followLinks;
+    private boolean sorted;
+    private boolean dupes;
+    private boolean checkpoint;
+    private boolean resume;
+    private int progress;
+    private String statsFile;
+
+    private WalkOptions() {
+
+    }
+
+    /**
+     * @return name of the file with paths to hash.
+     */
+    String getInputFile() {
+        return inputFile;
+    }
+
+    /**
+     * @return name of the file to write hashes to.
+     */
+    String getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * @return amount of hashing threads, {@code 1} means sequential mode.
+     * Recursive mode uses all available processors by default.
+     */
+    int getThreads() {
+        if (threads > 0) {
+            return threads;
+        }
+        return recursive ? Runtime.getRuntime().availableProcessors() : 1;
+    }
+
+    /**
+     * @return amount of threads hashing chunks of one file in tree mode, all available processors by default.
+     */
+    int getChunkThreads() {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return maximal amount of files that are hashed or wait to be written at the same time.
+     */
+    int getWindow() {
+        return window > 0 ? window : getThreads() * 16;
+    }
+
+    /**
+     * @return algorithm used to hash files.
+     */
+    HashAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return size of tree hash chunks in bytes or {@code 0} if files are hashed as a whole.
+     */
+    long getTreeChunk() {
+        return treeChunk;
+    }
+
+    /**
+     * @return description of hashes written to output, includes chunk size in tree mode.
+     */
+    String getHashName() {
+        return treeChunk > 0 ? algorithm.getName() + "@" + treeChunk : algorithm.getName();
+    }
+
+    /**
+     * @return description of options that affect the output, runs with the same one write the same lines.
+     */
+    String getOutputOptions() {
+        return getHashName() + (recursive ? " --recursive" : "") + (followLinks ? " --follow-links" : "")
+                + (sorted ? " --sorted" : "") + (dupes ? " --dupes" : "");
+    }
+
+    /**
+     * @return name of the hash cache file or {@code null} if cache is not used.
+     */
+    String getCacheFile() {
+        return cacheFile;
+    }
+
+    /**
+     * @return whether cache entries of files that were not listed in this run should be evicted.
+     */
+    boolean isCacheEvict() {
+        return cacheEvict;
+    }
+
+    /**
+     * @return whether directories should be walked recursively.
+     */
+    boolean isRecursive() {
+        return recursive;
+    }
+
+    /**
+     * @return whether symbolic links to directories should be followed in recursive mode.
+     */
+    boolean isFollowLinks() {
+        return followLinks;
+    }
+
+    /**
+     * @return whether files of directories should be written in name order in recursive mode.
+     */
+    boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * @return whether groups of duplicate files should be written instead of hashes of all files.
+     */
+    boolean isDupes() {
+        return dupes;
+    }
+
+    /**
+     * @return whether checkpoints should be stored in a journal next to the output, implied by {@link #isResume()}.
+     */
+    boolean isCheckpoint() {
+        return checkpoint || resume;
+    }
+
+    /**
+     * @return whether the run should continue from the checkpoint of the previous run with the same output.
+     */
+    boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * @return interval between progress lines in seconds or {@code 0} if progress is not reported.
+     */
+    int getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return name of the file to write JSON summary to or {@code null}.
+     */
+    String getStatsFile() {
+        return statsFile;
+    }
+
+    /**
+     * Parses command line arguments.
+     *
+     * @param args command line arguments
+     * @return parsed options
+     * @throws IllegalArgumentException if arguments are incorrect
+     */
+    static WalkOptions parse(final String[] args) {
+        if (args == null) {
+            throw new IllegalArgumentException("Arguments expected.");
+        }
+        final WalkOptions options = new WalkOptions();
+        int positional = 0;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] == null) {
+                throw new IllegalArgumentException("Null argument.");
+            }
+            if (!args[i].startsWith("--")) {
+                if (positional == 0) {
+                    options.inputFile = args[i];
+                } else if (positional == 1) {
+                    options.outputFile = args[i];
+                } else {
+                    throw new IllegalArgumentException("Too many files.");
+                }
+                positional++;
+                continue;
+            }
+            switch (args[i]) {
+                case "--threads":
+                    options.threads = positiveValue(args, ++i);
+                    break;
+                case "--window":
+                    options.window = positiveValue(args, ++i);
+                    break;
+                case "--hash":
+                    options.algorithm = HashAlgorithm.forName(value(args, ++i));
+                    break;
+                case "--tree-chunk":
+                    options.treeChunk = positiveLongValue(args, ++i);
+                    break;
+                case "--cache":
+                    options.cacheFile = value(args, ++i);
+                    break;
+                case "--cache-evict":
+                    options.cacheEvict = true;
+                    break;
+                case "--recursive":
+                    options.recursive = true;
+                    break;
+                case "--follow-links":
+                    options.followLinks = true;
+                    break;
+                case "--sorted":
+                    options.sorted = true;
+                    break;
+                case "--dupes":
+                    options.dupes = true;
+                    break;
+                case "--checkpoint":
+                    options.checkpoint = true;
+                    break;
+                case "--resume":
+                    options.resume = true;
+                    break;
+                case "--progress":
+                    options.progress = positiveValue(args, ++i);
+                    break;
+                case "--stats":
+                    options.statsFile = value(args, ++i);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+            }
+        }
+        if (positional != 2) {
+            throw new IllegalArgumentException("Input and output files expected.");
+        }
+        if (options.cacheEvict && options.cacheFile == null) {
+            throw new IllegalArgumentException("--cache-evict requires --cache.");
+        }
+        if ((options.followLinks || options.sorted) && !options.recursive) {
+            throw new IllegalArgumentException("--follow-links and --sorted require --recursive.");
+        }
+        if (options.dupes && (options.treeChunk > 0 || options.cacheFile != null || options.isCheckpoint())) {
+            throw new IllegalArgumentException("--dupes can't be used with --tree-chunk, --cache, --checkpoint and --resume.");
+        }
+        return options;
+    }
+
+    private static String value(final String[] args, final int pos) {
+        if (pos >= args.length || args[pos] == null) {
+            throw new IllegalArgumentException("Value expected after " + args[pos - 1] + ".");
+        }
+        return args[pos];
+    }
+
+    private static int positiveValue(final String[] args, final int pos) {
+        final long result = positiveLongValue(args, pos);
+        if (result > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(args[pos - 1] + " must be a value of type int.");
+        }
+        return (int) result;
+    }
+
+    private static long positiveLongValue(final String[] args, final int pos) {
+        final long result;
+        try {
+            result = Long.parseLong(value(args, pos));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(args[pos - 1] + " must be a value of type long.");
+        }
+        if (result <= 0) {
+            throw new IllegalArgumentException(args[pos - 1] + " must be positive.");
+        }
+        return result;
+    }
+}
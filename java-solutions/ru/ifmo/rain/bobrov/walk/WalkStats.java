@@ -0,0 +1,207 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class collects throughput statistics of a {@link Walk} run.
+ *
+ * Latency of every file is counted in a histogram with power of two buckets:
+ * bucket {@code i} holds files hashed in less than {@code 2^i} nanoseconds.
+ * Methods are thread safe.
+ */
+class WalkStats {
+    private static final int BUCKETS = Long.SIZE;
+
+    private final long start = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+    private ScheduledExecutorService reporter;
+
+    /**
+     * Counts hashed file.
+     *
+     * @param nanos time spent on the file
+     * @param success whether the file was hashed successfully
+     */
+    void fileHashed(final long nanos, final boolean success) {
+        files.increment();
+        if (!success) {
+            failed.increment();
+        }
+        latencies.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(Math.max(nanos, 0)));
+    }
+
+    /**
+     * Counts entry that could not be read without hashing it, for example an unreadable directory.
+     * Such entries have no latency and are not counted in percentiles.
+     */
+    void entryFailed() {
+        files.increment();
+        failed.increment();
+    }
+
+    /**
+     * Counts bytes read from files.
+     *
+     * @param amount amount of read bytes
+     */
+    void bytesRead(final long amount) {
+        bytes.add(amount);
+    }
+
+    /**
+     * @return amount of bytes read from files.
+     */
+    long getBytesRead() {
+        return bytes.sum();
+    }
+
+    /**
+     * @return amount of files that could not be hashed.
+     */
+    long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Starts printing progress lines to {@link System#err}.
+     *
+     * @param seconds interval between lines
+     */
+    synchronized void startProgress(final int seconds) {
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "walk-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long[] previous = new long[3];
+        previous[2] = start;
+        reporter.scheduleAtFixedRate(() -> {
+            final long now = System.nanoTime();
+            final long currentFiles = files.sum();
+            final long currentBytes = bytes.sum();
+            final double interval = (now - previous[2]) / 1e9;
+            System.err.printf("Progress: %d files (%.0f files/s), %d bytes (%.1f MB/s), %d failed%n",
+                    currentFiles, (currentFiles - previous[0]) / interval,
+                    currentBytes, (currentBytes - previous[1]) / interval / (1 << 20), failed.sum());
+            previous[0] = currentFiles;
+            previous[1] = currentBytes;
+            previous[2] = now;
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops printing progress lines.
+     */
+    synchronized void stopProgress() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    /**
+     * @return human-readable summary of the run.
+     */
+    String summary() {
+        final double seconds = elapsedSeconds();
+        final String summary = String.format("Hashed %d files, %d failed, %d bytes in %.2f s: %.0f files/s, %.1f MB/s",
+                files.sum(), failed.sum(), bytes.sum(), seconds,
+                files.sum() / seconds, bytes.sum() / seconds / (1 << 20));
+        if (timed() == 0) {
+            return summary;
+        }
+        return summary + String.format(", latency p50 < %s, p90 < %s, p99 < %s",
+                formatNanos(percentile(0.5)), formatNanos(percentile(0.9)), formatNanos(percentile(0.99)));
+    }
+
+    /**
+     * Writes summary of the run as JSON object.
+     *
+     * @param file file to write to
+     * @param cache cache used by the run or {@code null}
+     * @throws IOException if writing fails
+     */
+    void writeSummary(final Path file, final HashCache cache) throws IOException {
+        final double seconds = elapsedSeconds();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("{\n");
+            writer.write(String.format("  \"files\": %d,%n", files.sum()));
+            writer.write(String.format("  \"failed\": %d,%n", failed.sum()));
+            writer.write(String.format("  \"bytes\": %d,%n", bytes.sum()));
+            writer.write(String.format(Locale.ROOT, "  \"seconds\": %.3f,%n", seconds));
+            writer.write(String.format(Locale.ROOT, "  \"filesPerSecond\": %.1f,%n", files.sum() / seconds));
+            writer.write(String.format(Locale.ROOT, "  \"bytesPerSecond\": %.1f,%n", bytes.sum() / seconds));
+            if (cache != null) {
+                writer.write(String.format("  \"cacheHits\": %d,%n", cache.getHits()));
+                writer.write(String.format("  \"cacheMisses\": %d,%n", cache.getMisses()));
+            }
+            writer.write("  \"latencyNanos\": {");
+            boolean first = true;
+            for (int i = 0; i < BUCKETS; i++) {
+                final long count = latencies.get(i);
+                if (count != 0) {
+                    writer.write(String.format("%s%n    \"<%d\": %d", first ? "" : ",", bucketBound(i), count));
+                    first = false;
+                }
+            }
+            writer.write(String.format("%n  }%n}%n"));
+        }
+    }
+
+    private double elapsedSeconds() {
+        return Math.max(System.nanoTime() - start, 1) / 1e9;
+    }
+
+    /**
+     * Returns amount of files counted in the latency histogram, entries failed without hashing are not there.
+     */
+    private long timed() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += latencies.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Returns upper bound of the histogram bucket containing the given fraction of timed files.
+     */
+    private long percentile(final double fraction) {
+        final long total = timed();
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += latencies.get(i);
+            if (seen > 0 && seen >= fraction * total) {
+                return bucketBound(i);
+            }
+        }
+        return 0;
+    }
+
+    private static long bucketBound(final int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    private static String formatNanos(final long nanos) {
+        if (nanos < 1_000) {
+            return nanos + " ns";
+        }
+        if (nanos < 1_000_000) {
+            return nanos / 1_000 + " us";
+        }
+        return nanos / 1_000_000 + " ms";
+    }
+}
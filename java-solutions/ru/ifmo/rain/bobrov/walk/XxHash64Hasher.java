@@ -0,0 +1,116 @@
+package ru.ifmo.rain.bobrov.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming xxHash64 with zero seed.
+ *
+ * Input is consumed in stripes of four 8-byte lanes, bytes that do not fill a stripe
+ * are kept until the next update or the digest.
+ */
+class XxHash64Hasher implements HashAlgorithm.Hasher {
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 4 * Long.BYTES;
+
+    private final ByteBuffer pending = ByteBuffer.allocate(STRIPE).order(ByteOrder.LITTLE_ENDIAN);
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    private long length;
+
+    XxHash64Hasher() {
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        v1 = PRIME_1 + PRIME_2;
+        v2 = PRIME_2;
+        v3 = 0;
+        v4 = -PRIME_1;
+        length = 0;
+        pending.clear();
+    }
+
+    @Override
+    public void update(final ByteBuffer buffer) {
+        length += buffer.remaining();
+        if (pending.position() > 0) {
+            while (pending.hasRemaining() && buffer.hasRemaining()) {
+                pending.put(buffer.get());
+            }
+            if (pending.hasRemaining()) {
+                return;
+            }
+            stripe(pending, 0);
+            pending.clear();
+        }
+        final ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int i = buffer.position();
+        final int limit = buffer.limit();
+        for (; i + STRIPE <= limit; i += STRIPE) {
+            stripe(buffer, i);
+        }
+        buffer.position(i);
+        pending.put(buffer);
+        buffer.order(order);
+    }
+
+    private void stripe(final ByteBuffer buffer, final int offset) {
+        v1 = round(v1, buffer.getLong(offset));
+        v2 = round(v2, buffer.getLong(offset + Long.BYTES));
+        v3 = round(v3, buffer.getLong(offset + 2 * Long.BYTES));
+        v4 = round(v4, buffer.getLong(offset + 3 * Long.BYTES));
+    }
+
+    @Override
+    public byte[] digest() {
+        long hash;
+        if (length >= STRIPE) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = PRIME_5;
+        }
+        hash += length;
+        final int tail = pending.position();
+        int i = 0;
+        for (; i + Long.BYTES <= tail; i += Long.BYTES) {
+            hash ^= round(0, pending.getLong(i));
+            hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_4;
+        }
+        if (i + Integer.BYTES <= tail) {
+            hash ^= (pending.getInt(i) & 0xFFFFFFFFL) * PRIME_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME_2 + PRIME_3;
+            i += Integer.BYTES;
+        }
+        for (; i < tail; i++) {
+            hash ^= (pending.get(i) & 0xFF) * PRIME_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME_1;
+        }
+        hash ^= hash >>> 33;
+        hash *= PRIME_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME_3;
+        hash ^= hash >>> 32;
+        return ByteBuffer.allocate(Long.BYTES).putLong(hash).array();
+    }
+
+    private static long round(final long accumulator, final long lane) {
+        return Long.rotateLeft(accumulator + lane * PRIME_2, 31) * PRIME_1;
+    }
+
+    private static long merge(final long hash, final long accumulator) {
+        return (hash ^ round(0, accumulator)) * PRIME_1 + PRIME_4;
+    }
+}
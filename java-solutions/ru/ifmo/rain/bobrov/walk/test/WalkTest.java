@@ -0,0 +1,158 @@
+package ru.ifmo.rain.bobrov.walk.test;
+
+import org.junit.*;
+import ru.ifmo.rain.bobrov.walk.Walk;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares output of {@link Walk} with output of its first version, which read lines with
+ * {@link BufferedReader}, hashed files byte by byte and formatted lines with {@link String#format}.
+ */
+public class WalkTest {
+    private static final String[] NAMES = {
+            "file", "\u0444\u0430\u0439\u043b", "\u6587\u4ef6", "\ud83d\udcc1", "name with spaces", "\u00e9"};
+    private static final String[] LINE_SEPARATORS = {"\n", "\r\n", "\r"};
+
+    private final Random random = new Random(3485729384752938L);
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("walk");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void hashes() throws IOException {
+        // sizes around the read buffer of small files and the chunks of large ones
+        final int[] sizes = {0, 1, 1023, 1024, 65535, 65536, 65537, 3 * 65536 + 5, 1_000_000};
+        final List<String> lines = new ArrayList<>();
+        for (final int size : sizes) {
+            final byte[] contents = new byte[size];
+            random.nextBytes(contents);
+            lines.add(write("size" + size, contents).toString());
+        }
+        lines.add(directory.toString());
+        lines.add(directory.resolve("missing").toString());
+        lines.add("");
+        lines.add("\0");
+        final Path input = writeInput(lines, "\n");
+        checkWalk(input);
+        checkWalk(input, "--threads", "4");
+    }
+
+    @Test
+    public void lines() throws IOException {
+        final List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 30_000; i++) {
+            final String name = NAMES[random.nextInt(NAMES.length)] + i;
+            lines.add(random.nextInt(10) == 0
+                    ? write(name, name.getBytes(StandardCharsets.UTF_8)).toString()
+                    : directory.resolve("missing").resolve(name).toString());
+        }
+        // output is larger than the buffer of the writer, line separators fall on input buffer bounds
+        checkWalk(writeInput(lines, null));
+    }
+
+    @Test
+    public void resume() throws IOException, InterruptedException {
+        final List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            final String name = NAMES[random.nextInt(NAMES.length)] + i;
+            lines.add(i % 1000 == 0
+                    ? write(name, name.getBytes(StandardCharsets.UTF_8)).toString()
+                    : directory.resolve("missing").resolve(name).toString());
+        }
+        final Path input = writeInput(lines, null);
+        final Path output = directory.resolve("output.txt");
+        final Path journal = directory.resolve("output.txt.journal");
+
+        // an interrupted run stops at its next read or write and keeps the last checkpoint
+        final Thread run = new Thread(() -> Walk.main(new String[]{"--checkpoint", input.toString(), output.toString()}));
+        run.start();
+        while (run.isAlive() && (!Files.exists(output) || Files.size(output) < 2 << 20)) {
+            Thread.sleep(1);
+        }
+        run.interrupt();
+        run.join();
+        assertTrue("Run finished before it was interrupted", Files.exists(journal));
+
+        final byte[] interrupted = Files.readAllBytes(output);
+        Walk.main(new String[]{"--resume", "--hash", "fnv1a-64", input.toString(), output.toString()});
+        assertArrayEquals("Resume with other options", interrupted, Files.readAllBytes(output));
+        assertTrue(Files.exists(journal));
+
+        final Path stats = directory.resolve("stats.json");
+        Walk.main(new String[]{"--resume", "--stats", stats.toString(), input.toString(), output.toString()});
+        assertEquals(baseline(input), new String(Files.readAllBytes(output), StandardCharsets.UTF_8));
+        assertFalse(Files.exists(journal));
+        final Matcher files = Pattern.compile("\"files\": (\\d+)").matcher(Files.readString(stats));
+        assertTrue(files.find());
+        final long hashed = Long.parseLong(files.group(1));
+        assertTrue("Resumed run hashed " + hashed + " files", 0 < hashed && hashed < lines.size());
+    }
+
+    private void checkWalk(final Path input, final String... options) throws IOException {
+        final Path output = directory.resolve("output.txt");
+        final String[] args = Arrays.copyOf(options, options.length + 2);
+        args[options.length] = input.toString();
+        args[options.length + 1] = output.toString();
+        Walk.main(args);
+        assertEquals(baseline(input), new String(Files.readAllBytes(output), StandardCharsets.UTF_8));
+    }
+
+    private Path write(final String name, final byte[] contents) throws IOException {
+        return Files.write(directory.resolve(name), contents);
+    }
+
+    /**
+     * Writes lines separated by the given separator or by random ones if it is {@code null}.
+     */
+    private Path writeInput(final List<String> lines, final String separator) throws IOException {
+        final StringBuilder input = new StringBuilder();
+        for (final String line : lines) {
+            input.append(line).append(separator != null ? separator : LINE_SEPARATORS[random.nextInt(LINE_SEPARATORS.length)]);
+        }
+        return Files.writeString(directory.resolve("input.txt"), input);
+    }
+
+    private static String baseline(final Path input) throws IOException {
+        final StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String fileName;
+            while ((fileName = reader.readLine()) != null) {
+                output.append(String.format("%08x %s%n", fnv(fileName), fileName));
+            }
+        }
+        return output.toString();
+    }
+
+    private static int fnv(final String fileName) {
+        int hash = 0x811c9dc5;
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(Paths.get(fileName)))) {
+            int b;
+            while ((b = stream.read()) != -1) {
+                hash *= 0x01000193;
+                hash ^= b;
+            }
+        } catch (Exception e) {
+            return 0;
+        }
+        return hash;
+    }
+}